@@ -0,0 +1,79 @@
+package com.juliuswendland.chessai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Every benchmark handles all positions of the suite once per invocation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+    @Benchmark
+    public int generateLegalMoves(PositionSuite suite) {
+        int numberOfMoves = 0;
+        for(MoveGenerator moveGenerator : suite.moveGenerators) {
+            numberOfMoves += moveGenerator.generateLegalMoves(suite.moves);
+        }
+        return numberOfMoves;
+    }
+
+    // Check detection and the legality of king moves ask whether the enemy attacks one square
+    @Benchmark
+    public int isSquareAttacked(PositionSuite suite) {
+        int attackedSquares = 0;
+        for(Position position : suite.positions) {
+            int enemyColor = position.colorAtMove == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+            long occupancy = position.occupiedSquares();
+            for(int square = 0; square < 64; square++) {
+                if(position.isSquareAttacked(square, enemyColor, occupancy)) attackedSquares++;
+            }
+        }
+        return attackedSquares;
+    }
+
+    // Static exchange evaluation starts from all attackers of the target square of both colors
+    @Benchmark
+    public long attackersTo(PositionSuite suite) {
+        long attackers = 0L;
+        for(Position position : suite.positions) {
+            long occupancy = position.occupiedSquares();
+            for(int square = 0; square < 64; square++) {
+                attackers ^= position.attackersTo(square, occupancy);
+            }
+        }
+        return attackers;
+    }
+
+    @Benchmark
+    public long makeUnmakeMove(PositionSuite suite) {
+        long keys = 0L;
+        for(int i = 0; i < suite.positions.length; i++) {
+            Position position = suite.positions[i];
+            int[] moves = suite.legalMoves[i];
+            for(int j = 0; j < suite.numberOfLegalMoves[i]; j++) {
+                position.makeMove(moves[j]);
+                keys ^= position.zobristKey;
+                position.unmakeMove();
+            }
+        }
+        return keys;
+    }
+
+    @Benchmark
+    public int evaluate(PositionSuite suite) {
+        int scores = 0;
+        for(Position position : suite.positions) {
+            scores += Evaluation.evaluate(position);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,62 @@
+package com.juliuswendland.chessai;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Fixed positions every benchmark runs over, grouped by the phase of the game
+// Every thread gets its own positions, they are changed by making moves
+@State(Scope.Thread)
+public class PositionSuite {
+    private static final String[] OPENINGS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w KQkq - 1 5"
+    };
+    private static final String[] MIDDLEGAMES = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    private static final String[] ENDGAMES = {
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+            "8/5k2/8/3Q4/8/8/1K6/8 b - - 0 1"
+    };
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String phase;
+
+    public Position[] positions;
+    public MoveGenerator[] moveGenerators;
+    // Legal moves of every position, for benchmarks that need them but should not measure generating them
+    public int[][] legalMoves;
+    public int[] numberOfLegalMoves;
+    // Buffer moves are generated into while measuring
+    public final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] fens = switch(phase) {
+            case "opening" -> OPENINGS;
+            case "middlegame" -> MIDDLEGAMES;
+            case "endgame" -> ENDGAMES;
+            default -> throw new IllegalArgumentException("Unknown phase " + phase);
+        };
+
+        positions = new Position[fens.length];
+        moveGenerators = new MoveGenerator[fens.length];
+        legalMoves = new int[fens.length][MoveGenerator.MAX_MOVES];
+        numberOfLegalMoves = new int[fens.length];
+        for(int i = 0; i < fens.length; i++) {
+            positions[i] = new Position(fens[i]);
+            moveGenerators[i] = new MoveGenerator(positions[i]);
+            numberOfLegalMoves[i] = moveGenerators[i].generateLegalMoves(legalMoves[i]);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.juliuswendland.chessai;
+
+// Precomputed attack tables working on 64 bit masks
+// Bit i of a bitboard stands for the square with index i, so a8 is the lowest and h1 the highest bit
+public class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = 0x8080808080808080L;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // Squares attacked by a pawn of the given color standing on the given square
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    // Squares from a square to the edge of the board in every direction, indexed by direction and square
+    public static final long[][] RAYS = new long[8][64];
+    // Squares strictly between two squares sharing a line, empty if they do not share one
+    public static final long[][] BETWEEN = new long[64][64];
+    // Whole line through two squares from edge to edge, both included, empty if they do not share one
+    public static final long[][] LINE = new long[64][64];
+
+    // Number of squares between every square and the edge of the board in every direction
+    private static final int[][] NUMBER_OF_SQUARES_TO_BORDER = new int[64][8];
+
+    private static final int[] ROOK_DIRECTIONS = {Directions.LEFT, Directions.TOP, Directions.RIGHT, Directions.BOTTOM};
+    private static final int[] BISHOP_DIRECTIONS = {Directions.TOP_LEFT, Directions.TOP_RIGHT, Directions.BOTTOM_RIGHT, Directions.BOTTOM_LEFT};
+
+    // Magic bitboards: relevant blockers of a square are multiplied with a magic number
+    // whose upper bits form a perfect hash into the table of attacks for that blocker set
+    // The magics were found by a random search for this square numbering and are collision free
+    private static final long[] ROOK_MAGICS = {
+            0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+            0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+            0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+            0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+            0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+            0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+            0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+            0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+            0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+            0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+            0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+            0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+            0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+            0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+            0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+            0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+            0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+            0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+            0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+            0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+            0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+            0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+            0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+    };
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    static {
+        for(int rank = 0; rank < 8; rank++) {
+            for(int file = 0; file < 8; file++) {
+                int[] numberOfSquaresToBorder = NUMBER_OF_SQUARES_TO_BORDER[(rank * 8) + file];
+                numberOfSquaresToBorder[0] = file;
+                numberOfSquaresToBorder[2] = rank;
+                numberOfSquaresToBorder[4] = 7 - file;
+                numberOfSquaresToBorder[6] = 7 - rank;
+
+                numberOfSquaresToBorder[1] = Math.min(numberOfSquaresToBorder[0], numberOfSquaresToBorder[2]);
+                numberOfSquaresToBorder[3] = Math.min(numberOfSquaresToBorder[2], numberOfSquaresToBorder[4]);
+                numberOfSquaresToBorder[5] = Math.min(numberOfSquaresToBorder[4], numberOfSquaresToBorder[6]);
+                numberOfSquaresToBorder[7] = Math.min(numberOfSquaresToBorder[6], numberOfSquaresToBorder[0]);
+            }
+        }
+
+        for(int square = 0; square < 64; square++) {
+            initializeRays(square);
+        }
+        for(int square = 0; square < 64; square++) {
+            initializeLeaperAttacks(square);
+            initializeLines(square);
+        }
+
+        for(int square = 0; square < 64; square++) {
+            initializeMagic(square, ROOK_DIRECTIONS, ROOK_MAGICS[square], ROOK_MASKS, ROOK_SHIFTS, ROOK_ATTACKS);
+            initializeMagic(square, BISHOP_DIRECTIONS, BISHOP_MAGICS[square], BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_ATTACKS);
+        }
+    }
+
+    public static long squareBit(int square) {
+        return 1L << square;
+    }
+
+    public static long rookAttacks(int square, long occupancy) {
+        int index = (int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_ATTACKS[square][index];
+    }
+
+    public static long bishopAttacks(int square, long occupancy) {
+        int index = (int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_ATTACKS[square][index];
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    private static void initializeLeaperAttacks(int square) {
+        int rank = square / 8;
+        int file = square % 8;
+
+        int[][] knightSteps = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+        for(int[] step : knightSteps) {
+            KNIGHT_ATTACKS[square] |= bitIfOnBoard(rank + step[0], file + step[1]);
+        }
+
+        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
+            long ray = RAYS[directionIndex][square];
+            if(ray != 0) KING_ATTACKS[square] |= squareBit(firstSquareOf(directionIndex, ray));
+        }
+
+        // White pawns move towards the top (rank 0), dark pawns towards the bottom
+        PAWN_ATTACKS[Piece.WHITE][square] = bitIfOnBoard(rank - 1, file - 1) | bitIfOnBoard(rank - 1, file + 1);
+        PAWN_ATTACKS[Piece.DARK][square] = bitIfOnBoard(rank + 1, file - 1) | bitIfOnBoard(rank + 1, file + 1);
+    }
+
+    private static long bitIfOnBoard(int rank, int file) {
+        if(rank < 0 || rank > 7 || file < 0 || file > 7) return 0L;
+        return squareBit((rank * 8) + file);
+    }
+
+    private static void initializeRays(int square) {
+        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
+            int index = square;
+            for(int i = 0; i < NUMBER_OF_SQUARES_TO_BORDER[square][directionIndex]; i++) {
+                index += Directions.OFFSETS[directionIndex];
+                RAYS[directionIndex][square] |= squareBit(index);
+            }
+        }
+    }
+
+    private static void initializeLines(int square) {
+        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
+            long ray = RAYS[directionIndex][square];
+            // Directions are ordered clockwise, so the opposite one is four steps further
+            long line = ray | RAYS[(directionIndex + 4) % 8][square] | squareBit(square);
+
+            for(long targets = ray; targets != 0; targets &= targets - 1) {
+                int target = Long.numberOfTrailingZeros(targets);
+                LINE[square][target] = line;
+                // The ray of the target in the same direction continues where the squares in between end
+                BETWEEN[square][target] = ray & ~RAYS[directionIndex][target] & ~squareBit(target);
+            }
+        }
+    }
+
+    // Square of the given ones that comes first when walking from the start of a ray in the direction
+    private static int firstSquareOf(int directionIndex, long squares) {
+        if(Directions.OFFSETS[directionIndex] > 0) return Long.numberOfTrailingZeros(squares);
+        return 63 - Long.numberOfLeadingZeros(squares);
+    }
+
+    private static void initializeMagic(int square, int[] directions, long magic, long[] masks, int[] shifts,
+                                        long[][] attackTables) {
+        // Blockers on the last square of a ray never change the attacks, so they are not relevant
+        long mask = 0L;
+        for(int directionIndex : directions) {
+            long ray = RAYS[directionIndex][square];
+            if(ray == 0) continue;
+            int lastSquare = firstSquareOf((directionIndex + 4) % 8, ray);
+            mask |= ray & ~squareBit(lastSquare);
+        }
+
+        int shift = 64 - Long.bitCount(mask);
+        long[] table = new long[1 << Long.bitCount(mask)];
+
+        // Enumerate every subset of the relevant blockers and store the attacks it allows
+        // Two subsets may share an index only if they allow the same attacks, a slider always attacks
+        // some square, so an entry that is still 0 is one no subset was stored in yet
+        long subset = 0L;
+        do {
+            int index = (int) ((subset * magic) >>> shift);
+            long attacks = slidingAttacks(square, subset, directions);
+            if(table[index] != 0 && table[index] != attacks) {
+                throw new IllegalStateException("Magic number of square " + square + " maps blockers with different attacks to index " + index);
+            }
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while(subset != 0);
+
+        masks[square] = mask;
+        shifts[square] = shift;
+        attackTables[square] = table;
+    }
+
+    private static long slidingAttacks(int square, long occupancy, int[] directions) {
+        long attacks = 0L;
+        for(int directionIndex : directions) {
+            long ray = RAYS[directionIndex][square];
+            long blockers = ray & occupancy;
+            // Ray stops at the first blocker, which is attacked itself
+            if(blockers != 0) ray &= ~RAYS[directionIndex][firstSquareOf(directionIndex, blockers)];
+            attacks |= ray;
+        }
+        return attacks;
+    }
+}
@@ -3,24 +3,28 @@ package com.juliuswendland.chessai;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map;
-import java.util.Random;
 
 public class Board extends JLayeredPane {
     public static final Color DARK_COLOR = new Color(150, 80, 14);
     public static final Color LIGHT_COLOR = new Color(242, 165, 92);
     public static final Color DARK_COLOR_HIGHLIGHT = new Color(133, 28, 120);
     public static final Color LIGHT_COLOR_HIGHLIGHT = new Color(191, 82, 178);
-    public LinkedList<Piece> pieces = new LinkedList<>();
+    public static final long COMPUTER_MOVE_TIME = 1000;
+    // The board only displays this position, all game state lives inside of it
+    public Position position;
+    // Legal moves of the player, generated by the engine together with its move, so the GUI never generates them
     public LinkedList<Move> legalMoves;
-    public LinkedList<Move> enPassantMoves = new LinkedList<>();
-    public static final int[] OFFSETS = {-1, -9, -8, -7, 1, 9, 8, 7};
-    public int colorAtMove = 1;
     public MoveGenerator moveGenerator;
-    public boolean[][] possibleCastles = {{true, true}, {true, true}};
-    public Map<Move, Piece> moveHistory = new HashMap<>();
+    // Searches in the background and hands its progress and move to the event dispatch thread
+    public EngineService engine;
+    // The player may not move while the computer is searching
+    public boolean computerThinking = false;
+    // Reply the engine expects from the player and searches while the player thinks, Move.NONE if not pondering
+    private int ponderMove = Move.NONE;
+    private long ponderStartTime;
+    // Answer of a ponder search that already ended on its own, e.g. because it found a mate
+    private EngineService.Answer ponderAnswer;
 
     public Board(String fen) {
         Dimension boardSize = new Dimension(1000, 1000);
@@ -30,7 +34,11 @@ public class Board extends JLayeredPane {
         DragAndDropHandler dragAndDropHandler = new DragAndDropHandler(this);
         addMouseListener(dragAndDropHandler);
         addMouseMotionListener(dragAndDropHandler);
-        moveGenerator = new MoveGenerator(this);
+        position = new Position(fen);
+        moveGenerator = new MoveGenerator(position);
+        ParallelSearch search = new ParallelSearch(ParallelSearch.defaultNumberOfThreads(),
+                new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB));
+        engine = new EngineService(search, SwingUtilities::invokeLater);
 
         // Build the chess board by squares
         for(int rank = 0; rank < 8; rank++) {
@@ -42,93 +50,113 @@ public class Board extends JLayeredPane {
             }
         }
 
-        // Add pieces based on given FEN-String
-        interpretFenString(fen);
-
-        renderPiecesInitially();
+        // Add pieces of the position created from the given FEN-String
+        syncFromPosition();
 
         // Generate every possible move
         legalMoves = moveGenerator.generateLegalMoves();
     }
 
     public void choseComputerMove() {
-        // TODO remove this
-        if(legalMoves.size() == 0) return;
+        computerThinking = true;
+
+        if(ponderMove != Move.NONE && position.lastMove() == ponderMove) {
+            // Ponder hit: the engine is already searching this position and keeps going
+            ponderMove = Move.NONE;
+            if(ponderAnswer != null) {
+                playComputerMove(ponderAnswer);
+                return;
+            }
+            // The time spent pondering counts towards the time of the move
+            long ponderedMillis = (System.nanoTime() - ponderStartTime) / 1_000_000;
+            engine.ponderHit(SearchLimits.moveTime(Math.max(0, COMPUTER_MOVE_TIME - ponderedMillis)));
+            return;
+        }
 
-        // Choose a random move
-        int minMoveIndex = 0;
-        int maxMoveIndex = legalMoves.size();
-        Random random = new Random();
-        int moveIndex = random.nextInt(maxMoveIndex) + minMoveIndex;
+        // Starting the search drops a ponder search on another move,
+        // what it stored in the transposition table is still found by the new one
+        ponderMove = Move.NONE;
+        ponderAnswer = null;
+        // Returns right away, the window stays responsive while the engine searches
+        engine.search(position, SearchLimits.moveTime(COMPUTER_MOVE_TIME), this::showProgress, this::playComputerMove);
+    }
 
-        Move move = legalMoves.get(moveIndex);
-        makeMove(move);
+    // Searches the position after the reply the engine expects without a time limit until the player moved
+    private void startPondering(EngineService.Answer answer) {
+        int[] principalVariation = answer.result().principalVariation();
+        if(principalVariation.length < 2) return;
+        // The line may come from the transposition table, so the reply is only trusted if it is legal
+        int expectedReply = principalVariation[1];
+        if(!answer.legalMovesAfterwards().contains(Move.decode(expectedReply))) return;
+
+        Position expectedPosition = new Position(position);
+        expectedPosition.makeMove(expectedReply);
+        ponderMove = expectedReply;
+        ponderAnswer = null;
+        ponderStartTime = System.nanoTime();
+        engine.search(expectedPosition, new SearchLimits(), this::showPonderProgress, this::ponderFinished);
     }
 
-    public void makeMove(Move move) {
-        Square startSquare = move.startSquare();
-        Square targetSquare = move.targetSquare();
-        Piece piece = startSquare.getPiece();
-
-        // Captured piece isn't always on target square because of en passant moves
-        Piece capturedPiece;
-        Square capturedSquare;
-
-        if(move.moveFlag() == MoveFlags.EN_PASSANT) {
-            int capturedPieceDirection = piece.getColor() == Piece.WHITE ? Directions.BOTTOM : Directions.TOP;
-            int capturedSquareIndex = targetSquare.getIndex() + OFFSETS[capturedPieceDirection];
-            capturedSquare = (Square) getComponent(capturedSquareIndex);
-        }
-        else {
-            capturedSquare = targetSquare;
+    // The progress of the ponder search is only shown once the player made the expected move
+    private void showPonderProgress(SearchResult result) {
+        if(ponderMove == Move.NONE) showProgress(result);
+    }
+
+    private void ponderFinished(EngineService.Answer answer) {
+        if(ponderMove == Move.NONE) {
+            playComputerMove(answer);
+        } else {
+            // The player has not moved yet, the answer is kept in case the expected move is played
+            ponderAnswer = answer;
         }
-        capturedPiece = capturedSquare.getPiece();
+    }
+
+    // Called on the event dispatch thread for every search iteration the engine completes
+    private void showProgress(SearchResult result) {
+        if(!(SwingUtilities.getWindowAncestor(this) instanceof JFrame frame)) return;
+        String bestMove = result.bestMove() == Move.NONE ? "-" : Move.toUci(result.bestMove());
+        frame.setTitle(String.format("%s - thinking: depth %d, score %+.2f, best move %s",
+                Main.TITLE, result.depth(), result.score() / 100.0, bestMove));
+    }
 
-        // Remove piece from start square and add to target square
-        startSquare.removePiece();
-        targetSquare.removePiece();
-        targetSquare.addPiece(piece);
-        piece.positionIndex = targetSquare.getIndex();
+    // Called on the event dispatch thread once the engine found its move
+    private void playComputerMove(EngineService.Answer answer) {
+        computerThinking = false;
+        if(SwingUtilities.getWindowAncestor(this) instanceof JFrame frame) frame.setTitle(Main.TITLE);
 
-        // Handle special moves
-        moveGenerator.handleMove(piece, move);
+        // Game is over
+        if(answer.result().bestMove() == Move.NONE) return;
 
-        // Add to moveHistory to make it possible to unmake the move later
-        moveHistory.put(move, capturedPiece);
+        position.makeMove(answer.result().bestMove());
+        syncFromPosition();
+        legalMoves = answer.legalMovesAfterwards();
+        startPondering(answer);
     }
 
-    public LinkedList<Square> getSquaresBetweenTwoPieces(Piece pieceOne, Piece pieceTwo) {
-        LinkedList<Square> squares = new LinkedList<>();
-
-        int index = pieceOne.positionIndex;
-        Square startSquare = (Square) getComponent(index);
-        int[] numberSquaresToBorder = startSquare.getNumberOfSquaresToBorder();
-
-        // Start going to the edge of the board until you reach the desired second square
-        // If edge is reached then there are no squares in between
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
-            squares.clear();
-            index = pieceOne.positionIndex;
-            for(int i = 0; i < numberSquaresToBorder[directionIndex]; i++) {
-                index += OFFSETS[directionIndex];
-                Square square = (Square) getComponent(index);
-                if(square.getPiece() == pieceTwo) {
-                    return squares;
-                }
-                squares.add(square);
-            }
-        }
-        squares.clear();
-        return squares;
+    // Makes the move of the player, the computer moves next
+    public void makeMove(Move move) {
+        position.makeMove(move);
+        syncFromPosition();
+
+        // The player has no moves until the engine answered with the next list
+        legalMoves = new LinkedList<>();
     }
 
-    public Move getMove(Square startSquare, Square targetSquare) {
+    public Move getMove(int startSquare, int targetSquare) {
+        Move foundMove = null;
         for(Move move : legalMoves) {
             if(move.startSquare() == startSquare && move.targetSquare() == targetSquare) {
-                return move;
+                foundMove = move;
+                break;
             }
         }
-        return null;
+
+        if(foundMove == null || !MoveFlags.isPromotion(foundMove.moveFlag())) return foundMove;
+
+        // Let the player choose the piece the pawn gets promoted to
+        Object returnValue = createTransformDialog(position.colorAtMove);
+        int type = returnValue instanceof Integer chosenType ? chosenType : Piece.QUEEN;
+        return new Move(startSquare, targetSquare, MoveFlags.promotionFlag(type));
     }
 
     public Object createTransformDialog(int color) {
@@ -162,47 +190,30 @@ public class Board extends JLayeredPane {
         Square square = (Square) pieceToMove.getParent();
         square.removePiece();
         for(Move move : legalMoves) {
-            if(square.getIndex() == move.startSquare().getIndex()) {
-                move.targetSquare().setTargetSquare();
+            if(square.getIndex() == move.startSquare()) {
+                ((Square) getComponent(move.targetSquare())).setTargetSquare();
             }
         }
     }
 
-    private void interpretFenString(String fen) {
-        Map<Character, Integer> fenToPiece = new HashMap<>();
-        fenToPiece.put('k', 0);
-        fenToPiece.put('q', 1);
-        fenToPiece.put('b', 2);
-        fenToPiece.put('n', 3);
-        fenToPiece.put('r', 4);
-        fenToPiece.put('p', 5);
-
-        char[] characters = fen.toCharArray();
-        int currentIndex = 0;
-
-        for(char character : characters) {
-            char lowerCaseCharacter = Character.toLowerCase(character);
-
-            if(fenToPiece.containsKey(lowerCaseCharacter)) {
-                // Character resembles a piece
-                int type = fenToPiece.get(lowerCaseCharacter);
-                int color = Character.isUpperCase(character) ? 1 : 0;
-                pieces.add(new Piece(currentIndex, type, color));
-                currentIndex++;
+    private void syncFromPosition() {
+        // Only replace pieces on squares that differ from the position
+        for(int i = 0; i < 64; i++) {
+            Square square = (Square) getComponent(i);
+            Piece displayedPiece = square.getPiece();
+            int piece = position.squares[i];
+
+            if(piece == Position.EMPTY) {
+                if(displayedPiece != null) square.removePiece();
                 continue;
             }
 
-            int numberOfSquares = Character.getNumericValue(character);
-            // Character is a slash
-            if(numberOfSquares == -1) continue;
-            currentIndex += numberOfSquares;
-        }
-    }
+            int type = Position.typeOf(piece);
+            int color = Position.colorOf(piece);
+            if(displayedPiece != null && displayedPiece.getType() == type && displayedPiece.getColor() == color) continue;
 
-    private void renderPiecesInitially() {
-        for(Piece piece : pieces) {
-            Square square = (Square) getComponent(piece.positionIndex);
-            square.addPiece(piece);
+            square.removePiece();
+            square.addPiece(new Piece(i, type, color));
         }
     }
 
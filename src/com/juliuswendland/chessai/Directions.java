@@ -9,4 +9,7 @@ public class Directions {
     public static final int BOTTOM_RIGHT = 5;
     public static final int BOTTOM = 6;
     public static final int BOTTOM_LEFT = 7;
+
+    // Index offsets of a step in the direction of the same index
+    public static final int[] OFFSETS = {-1, -9, -8, -7, 1, 9, 8, 7};
 }
@@ -20,6 +20,8 @@ public class DragAndDropHandler implements MouseListener, MouseMotionListener {
     @Override
     public void mousePressed(MouseEvent e) {
         pieceToMove = null;
+        if(board.computerThinking) return;
+
         Component componentAtMouse = board.findComponentAt(e.getX(), e.getY());
 
         // Clicked on an empty square
@@ -28,7 +30,7 @@ public class DragAndDropHandler implements MouseListener, MouseMotionListener {
         // Keep relative position of piece to mouse
         Point parentLocation = componentAtMouse.getParent().getLocation();
         pieceToMove = (Piece) componentAtMouse;
-        if(pieceToMove.getColor() != board.colorAtMove || pieceToMove.getColor() == Piece.DARK) {
+        if(pieceToMove.getColor() != board.position.colorAtMove || pieceToMove.getColor() == Piece.DARK) {
             pieceToMove = null;
             return;
         }
@@ -104,23 +106,12 @@ public class DragAndDropHandler implements MouseListener, MouseMotionListener {
             return;
         }
 
-        // If there is a piece on the square, remove it
-        if(targetSquare.getPiece() != null) {
-            board.pieces.remove(targetSquare.getPiece());
-            targetSquare.removePiece();
-        }
-
-        // Add new piece to square
-        targetSquare.addPiece(pieceToMove);
-        pieceToMove.positionIndex = targetSquare.getIndex();
-        pieceToMove.hasMovesPreviously = true;
-
         // Reset all squares
         board.resetAllSquares();
 
-        // Check for special moves and pieces
-        Move moveDone = board.getMove(startSquare, targetSquare);
-        board.moveGenerator.handleMove(pieceToMove, moveDone);
+        // The dragged piece is rendered again on its new square once the position is updated
+        Move moveDone = board.getMove(startSquare.getIndex(), targetSquare.getIndex());
+        board.makeMove(moveDone);
 
         // Next move is the AIs move
         board.choseComputerMove();
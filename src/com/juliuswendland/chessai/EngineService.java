@@ -0,0 +1,115 @@
+package com.juliuswendland.chessai;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Runs searches on a dedicated background thread, so the caller never waits for the engine
+// Progress and results are handed to the callback executor, e.g. SwingUtilities::invokeLater for the GUI
+// Only the last requested search is reported, starting a new search or cancelling drops the one before
+// Positions in the opening book are answered with a book move instead of a search, on the engine thread as well
+public class EngineService {
+    private final ParallelSearch search;
+    private final Executor callbackExecutor;
+    private final ExecutorService engineThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Incremented for every new search and every cancel, results of older searches are not reported
+    private volatile long currentRequest;
+    // Limits of the last requested search
+    private volatile SearchLimits currentLimits;
+    // Optional, null to always search
+    private volatile PolyglotBook book;
+
+    // Finished search together with the legal moves of the position after its best move,
+    // generated on the engine thread so the receiver does not have to
+    public record Answer(SearchResult result, LinkedList<Move> legalMovesAfterwards) {}
+
+    public EngineService(ParallelSearch search, Executor callbackExecutor) {
+        this.search = search;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public ParallelSearch getSearch() {
+        return search;
+    }
+
+    public void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    // Searches a copy of the position, so it can be changed as soon as this returns
+    // onProgress receives every completed iteration and may be null
+    public void search(Position position, SearchLimits limits, Consumer<SearchResult> onProgress,
+                       Consumer<Answer> onAnswer) {
+        Position searchedPosition = new Position(position);
+        long request = startNewRequest();
+        currentLimits = limits;
+
+        engineThread.execute(() -> {
+            if(!prepare(request)) return;
+
+            SearchResult result = bookResult(searchedPosition);
+            if(result == null) {
+                search.setIterationListener(onProgress == null ? null
+                        : iteration -> deliver(request, () -> onProgress.accept(iteration)));
+                result = search.search(searchedPosition, limits);
+                search.setIterationListener(null);
+            }
+
+            LinkedList<Move> legalMovesAfterwards = new LinkedList<>();
+            if(result.bestMove() != Move.NONE) {
+                searchedPosition.makeMove(result.bestMove());
+                legalMovesAfterwards = new MoveGenerator(searchedPosition).generateLegalMoves();
+            }
+            Answer answer = new Answer(result, legalMovesAfterwards);
+            deliver(request, () -> onAnswer.accept(answer));
+        });
+    }
+
+    // A book move as the result of a search of depth 0, null if the position is not in the book
+    private SearchResult bookResult(Position position) {
+        PolyglotBook book = this.book;
+        if(book == null) return null;
+        int move = book.probe(position);
+        if(move == Move.NONE) return null;
+        return new SearchResult(move, 0, 0, 0, 0, new int[] {move});
+    }
+
+    // Gives the current search, started without time limits to ponder on the expected reply,
+    // the time limits for the move it has to make now
+    // If the search already finished on its own, its answer has been delivered before
+    public void ponderHit(SearchLimits timeLimits) {
+        search.ponderHit(currentLimits, timeLimits);
+    }
+
+    // Stops the running search as soon as possible without reporting its result
+    public void cancel() {
+        startNewRequest();
+    }
+
+    // Clears the stop of the search before this one, unless this one was replaced or cancelled while waiting
+    // Holds the same lock as startNewRequest(), so every cancel after this stops the search
+    private synchronized boolean prepare(long request) {
+        if(request != currentRequest) return false;
+        search.prepare();
+        return true;
+    }
+
+    private synchronized long startNewRequest() {
+        search.stop();
+        return ++currentRequest;
+    }
+
+    // The request is checked again on the callback executor, as a cancel can arrive while the callback waits there
+    private void deliver(long request, Runnable callback) {
+        if(request != currentRequest) return;
+        callbackExecutor.execute(() -> {
+            if(request == currentRequest) callback.run();
+        });
+    }
+}
@@ -0,0 +1,189 @@
+package com.juliuswendland.chessai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs a test suite in EPD format like WAC or STS and counts the positions where the engine finds the solution
+//
+// Usage: EpdRunner <file> [--movetime <milliseconds>] [--depth <depth>] [--threads <n>] [--hash <megabytes>]
+// Every position is searched on its own by one thread with its own transposition table,
+// the threads work through the positions in parallel
+// A position is solved if the best move is one of its bm moves and none of its am moves
+public class EpdRunner {
+    private static final long DEFAULT_MOVE_TIME = 1000;
+    private static final int DEFAULT_HASH_MB = 16;
+
+    public record TestPosition(String id, String fen, int[] bestMoves, int[] avoidMoves) {}
+
+    public record Outcome(TestPosition test, SearchResult result, boolean solved) {}
+
+    // Reads every line with a position, operations other than bm, am and id are ignored
+    public static List<TestPosition> read(Path file) throws IOException {
+        List<TestPosition> tests = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file);
+        for(int lineNumber = 0; lineNumber < lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber).trim();
+            if(line.isEmpty() || line.startsWith("#")) continue;
+
+            try {
+                tests.add(parse(line, "line " + (lineNumber + 1)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ", line " + (lineNumber + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return tests;
+    }
+
+    private static TestPosition parse(String line, String defaultId) {
+        Position position = new Position(Main.START_POSITION);
+        int end = Fen.read(position, line, 0);
+        String fen = Fen.write(position);
+
+        String id = defaultId;
+        List<Integer> bestMoves = new ArrayList<>();
+        List<Integer> avoidMoves = new ArrayList<>();
+        for(String operation : line.substring(end).split(";")) {
+            String[] tokens = operation.trim().split("\\s+");
+            switch(tokens[0]) {
+                case "id" -> id = operation.trim().substring(2).trim().replace("\"", "");
+                case "bm" -> readMoves(position, tokens, bestMoves);
+                case "am" -> readMoves(position, tokens, avoidMoves);
+                default -> {}
+            }
+        }
+
+        if(bestMoves.isEmpty() && avoidMoves.isEmpty()) throw new IllegalArgumentException("Neither bm nor am given");
+        return new TestPosition(id, fen, toArray(bestMoves), toArray(avoidMoves));
+    }
+
+    private static void readMoves(Position position, String[] tokens, List<Integer> moves) {
+        for(int i = 1; i < tokens.length; i++) {
+            int move = San.read(position, tokens[i]);
+            if(move == Move.NONE) throw new IllegalArgumentException("Illegal move " + tokens[i]);
+            moves.add(move);
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static boolean isSolved(TestPosition test, int move) {
+        for(int avoidMove : test.avoidMoves()) {
+            if(avoidMove == move) return false;
+        }
+        if(test.bestMoves().length == 0) return true;
+        for(int bestMove : test.bestMoves()) {
+            if(bestMove == move) return true;
+        }
+        return false;
+    }
+
+    // Searches all positions on the given number of threads, the outcomes are in the order of the tests
+    public static List<Outcome> run(List<TestPosition> tests, SearchLimits limits, int threads, int hashMegabytes)
+            throws InterruptedException {
+        // Every worker keeps its search and table for all positions it gets
+        ThreadLocal<Search> searches = ThreadLocal.withInitial(() ->
+                new Search(new Position(Main.START_POSITION), new TranspositionTable(hashMegabytes)));
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "EPD worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<Outcome>> futures = new ArrayList<>();
+        for(TestPosition test : tests) {
+            futures.add(workers.submit(() -> {
+                Search search = searches.get();
+                // Positions are searched independently, nothing is carried over from the one before
+                search.getTranspositionTable().clear();
+                search.getPosition().copyFrom(new Position(test.fen()));
+                SearchResult result = search.search(limits);
+                return new Outcome(test, result, isSolved(test, result.bestMove()));
+            }));
+        }
+
+        List<Outcome> outcomes = new ArrayList<>();
+        try {
+            for(Future<Outcome> future : futures) {
+                outcomes.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 1) {
+            System.out.println("Usage: EpdRunner <file> [--movetime <milliseconds>] [--depth <depth>] [--threads <n>] [--hash <megabytes>]");
+            return;
+        }
+
+        long moveTime = -1;
+        int depth = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMegabytes = DEFAULT_HASH_MB;
+        for(int i = 1; i < args.length; i++) {
+            switch(args[i]) {
+                case "--movetime" -> moveTime = Long.parseLong(args[++i]);
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                case "--hash" -> hashMegabytes = Integer.parseInt(args[++i]);
+                default -> {}
+            }
+        }
+
+        // A depth alone searches without a time limit, with both the search stops at whichever comes first
+        SearchLimits limits = depth > 0 && moveTime < 0 ? new SearchLimits()
+                : SearchLimits.moveTime(moveTime < 0 ? DEFAULT_MOVE_TIME : moveTime);
+        if(depth > 0) limits.depth = Math.min(depth, Search.MAX_DEPTH);
+
+        List<TestPosition> tests = read(Path.of(args[0]));
+        long startTime = System.nanoTime();
+        List<Outcome> outcomes = run(tests, limits, threads, hashMegabytes);
+        long timeMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        int solved = 0;
+        long nodes = 0;
+        for(Outcome outcome : outcomes) {
+            TestPosition test = outcome.test();
+            Position position = new Position(test.fen());
+            int bestMove = outcome.result().bestMove();
+            String found = bestMove == Move.NONE ? "-" : San.write(position, bestMove);
+            System.out.println((outcome.solved() ? "solved " : "failed ") + test.id() + ": " + found
+                    + expected(position, test) + ", depth " + outcome.result().depth());
+            if(outcome.solved()) solved++;
+            nodes += outcome.result().nodes();
+        }
+
+        System.out.println("Solved: " + solved + " of " + outcomes.size());
+        System.out.println("Time: " + timeMillis + " ms");
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Nodes per second: " + (nodes * 1000 / Math.max(1, timeMillis)));
+    }
+
+    private static String expected(Position position, TestPosition test) {
+        StringBuilder expected = new StringBuilder();
+        if(test.bestMoves().length > 0) {
+            expected.append(" (bm");
+            for(int move : test.bestMoves()) expected.append(' ').append(San.write(position, move));
+            expected.append(')');
+        }
+        if(test.avoidMoves().length > 0) {
+            expected.append(" (am");
+            for(int move : test.avoidMoves()) expected.append(' ').append(San.write(position, move));
+            expected.append(')');
+        }
+        return expected.toString();
+    }
+}
@@ -0,0 +1,252 @@
+package com.juliuswendland.chessai;
+
+// Tapered evaluation of material, piece-square tables and pawn structure
+//
+// Every piece has a value for the middlegame and one for the endgame, depending on its square.
+// The position adds and subtracts these values whenever a piece is added, removed or moved,
+// so evaluating a position only blends the two running sums by the game phase.
+// The pawn structure changes rarely, so its score is cached in a PawnHashTable by the pawn key.
+public class Evaluation {
+    // Values of the piece types in centipawns, indexed by Piece.KING, Piece.QUEEN, ...
+    public static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+    public static final int[] ENDGAME_PIECE_VALUES = {0, 950, 340, 300, 540, 120};
+
+    // Phase of the game is the sum of the phase values of all pieces on the board, starting at MAX_PHASE
+    // Pawns and kings do not count, without any other piece the position is a pure endgame
+    public static final int MAX_PHASE = 24;
+    public static final int[] PHASE_VALUES = {0, 4, 1, 1, 2, 0};
+
+    // Value of every piece on every square from the perspective of white, indexed by piece and square
+    // Values of dark pieces are negative
+    public static final int[][] MIDGAME_VALUES = new int[16][64];
+    public static final int[][] ENDGAME_VALUES = new int[16][64];
+
+    // Piece-square tables as seen by white, the first entry is a8 like the square indices
+    private static final int[] PAWN_MIDGAME = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0
+    };
+    // Pawns close to promotion become much more valuable without pieces that can stop them
+    private static final int[] PAWN_ENDGAME = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             90,  90,  90,  90,  90,  90,  90,  90,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             30,  30,  30,  30,  30,  30,  30,  30,
+             15,  15,  15,  15,  15,  15,  15,  15,
+              5,   5,   5,   5,   5,   5,   5,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+    // The king hides behind its pawns in the middlegame and becomes an active piece in the endgame
+    private static final int[] KING_MIDGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // Pawn structure terms, middlegame and endgame value of each
+    private static final int DOUBLED_MIDGAME = -10, DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10, ISOLATED_ENDGAME = -15;
+    private static final int BACKWARD_MIDGAME = -8, BACKWARD_ENDGAME = -10;
+    // Bonus of passed pawns, indexed by the number of ranks the pawn has advanced from its own back rank
+    private static final int[] PASSED_MIDGAME = {0, 5, 5, 10, 20, 35, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 15, 25, 40, 65, 100, 0};
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // Squares in front of a pawn of the given color on its own and the adjacent files,
+    // a pawn without enemy pawns there is passed
+    private static final long[][] PASSED_PAWN_MASKS = new long[2][64];
+    // Squares on the adjacent files next to and behind a pawn of the given color,
+    // a pawn without friendly pawns there cannot be protected by one anymore
+    private static final long[][] SUPPORT_MASKS = new long[2][64];
+
+    static {
+        for(int file = 0; file < 8; file++) {
+            FILES[file] = Bitboards.FILE_A << file;
+        }
+        for(int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0L) | (file < 7 ? FILES[file + 1] : 0L);
+        }
+        for(int square = 0; square < 64; square++) {
+            int rank = square / 8;
+            int file = square % 8;
+            for(int otherRank = 0; otherRank < 8; otherRank++) {
+                long rankSquares = 0xFFL << (otherRank * 8);
+                long files = FILES[file] | ADJACENT_FILES[file];
+                // White pawns move towards rank 0
+                if(otherRank < rank) {
+                    PASSED_PAWN_MASKS[Piece.WHITE][square] |= rankSquares & files;
+                    SUPPORT_MASKS[Piece.DARK][square] |= rankSquares & ADJACENT_FILES[file];
+                }
+                if(otherRank > rank) {
+                    PASSED_PAWN_MASKS[Piece.DARK][square] |= rankSquares & files;
+                    SUPPORT_MASKS[Piece.WHITE][square] |= rankSquares & ADJACENT_FILES[file];
+                }
+                if(otherRank == rank) {
+                    SUPPORT_MASKS[Piece.WHITE][square] |= rankSquares & ADJACENT_FILES[file];
+                    SUPPORT_MASKS[Piece.DARK][square] |= rankSquares & ADJACENT_FILES[file];
+                }
+            }
+        }
+
+        // Indexed by Piece.KING, Piece.QUEEN, ...
+        int[][] midgameTables = {KING_MIDGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_MIDGAME};
+        int[][] endgameTables = {KING_ENDGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_ENDGAME};
+
+        for(int type = Piece.KING; type <= Piece.PAWN; type++) {
+            int white = Position.makePiece(type, Piece.WHITE);
+            int dark = Position.makePiece(type, Piece.DARK);
+            for(int square = 0; square < 64; square++) {
+                MIDGAME_VALUES[white][square] = PIECE_VALUES[type] + midgameTables[type][square];
+                ENDGAME_VALUES[white][square] = ENDGAME_PIECE_VALUES[type] + endgameTables[type][square];
+                // Dark sees the board mirrored from the other side
+                MIDGAME_VALUES[dark][square] = -(PIECE_VALUES[type] + midgameTables[type][square ^ 56]);
+                ENDGAME_VALUES[dark][square] = -(ENDGAME_PIECE_VALUES[type] + endgameTables[type][square ^ 56]);
+            }
+        }
+    }
+
+    // Score of the position from the perspective of the color at move
+    public static int evaluate(Position position) {
+        return evaluate(position, pawnStructure(position));
+    }
+
+    // Same as evaluate(Position), but the pawn structure is looked up in the table
+    public static int evaluate(Position position, PawnHashTable pawnHashTable) {
+        return evaluate(position, pawnHashTable.pawnStructure(position));
+    }
+
+    private static int evaluate(Position position, int pawnStructure) {
+        int midgameScore = position.midgameScore + midgameOf(pawnStructure);
+        int endgameScore = position.endgameScore + endgameOf(pawnStructure);
+        int phase = Math.min(position.phase, MAX_PHASE);
+        int score = ((midgameScore * phase) + (endgameScore * (MAX_PHASE - phase))) / MAX_PHASE;
+        return position.colorAtMove == Piece.WHITE ? score : -score;
+    }
+
+    // Doubled, isolated, backward and passed pawns from the perspective of white
+    // Only depends on the pawns, so the result can be cached by the pawn key of the position
+    // Returns the middlegame and endgame score packed into one int, see packScore()
+    public static int pawnStructure(Position position) {
+        int midgameScore = 0;
+        int endgameScore = 0;
+
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+            long friendlyPawns = position.pieceBitboards[color][Piece.PAWN];
+            long enemyPawns = position.pieceBitboards[enemyColor][Piece.PAWN];
+            int sign = color == Piece.WHITE ? 1 : -1;
+
+            for(int file = 0; file < 8; file++) {
+                int pawnsOnFile = Long.bitCount(friendlyPawns & FILES[file]);
+                if(pawnsOnFile > 1) {
+                    midgameScore += sign * (pawnsOnFile - 1) * DOUBLED_MIDGAME;
+                    endgameScore += sign * (pawnsOnFile - 1) * DOUBLED_ENDGAME;
+                }
+            }
+
+            long pawns = friendlyPawns;
+            while(pawns != 0) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                pawns &= pawns - 1;
+                int file = square % 8;
+
+                if((friendlyPawns & ADJACENT_FILES[file]) == 0) {
+                    midgameScore += sign * ISOLATED_MIDGAME;
+                    endgameScore += sign * ISOLATED_ENDGAME;
+                } else if((friendlyPawns & SUPPORT_MASKS[color][square]) == 0) {
+                    // Backward if an enemy pawn controls the square in front, so the pawn cannot catch up
+                    int stopSquare = square + (color == Piece.WHITE ? -8 : 8);
+                    if((Bitboards.PAWN_ATTACKS[color][stopSquare] & enemyPawns) != 0) {
+                        midgameScore += sign * BACKWARD_MIDGAME;
+                        endgameScore += sign * BACKWARD_ENDGAME;
+                    }
+                }
+
+                if((enemyPawns & PASSED_PAWN_MASKS[color][square]) == 0) {
+                    int advancedRanks = color == Piece.WHITE ? 7 - (square / 8) : square / 8;
+                    midgameScore += sign * PASSED_MIDGAME[advancedRanks];
+                    endgameScore += sign * PASSED_ENDGAME[advancedRanks];
+                }
+            }
+        }
+
+        return packScore(midgameScore, endgameScore);
+    }
+
+    // Middlegame score in the lower 16 bits and endgame score in the upper 16 bits,
+    // the middlegame score borrows from the endgame score if it is negative
+    public static int packScore(int midgameScore, int endgameScore) {
+        return (endgameScore << 16) + midgameScore;
+    }
+
+    public static int midgameOf(int score) {
+        return (short) score;
+    }
+
+    public static int endgameOf(int score) {
+        return (score + 0x8000) >> 16;
+    }
+}
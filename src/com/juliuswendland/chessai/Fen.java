@@ -0,0 +1,204 @@
+package com.juliuswendland.chessai;
+
+import java.util.Arrays;
+
+// Reads and writes positions in Forsyth-Edwards Notation
+//
+// Reading works directly on the characters and writes into the primitive fields of the position,
+// it does not allocate anything unless the FEN is invalid. Reading into the same position over and over
+// again is therefore cheap enough to load large test suites and training sets.
+public class Fen {
+    // Characters of the piece types, indexed by type
+    private static final String PIECE_CHARACTERS = "kqbnrp";
+    // Piece for every ASCII character, EMPTY if the character is no piece
+    private static final int[] PIECE_OF_CHARACTER = new int[128];
+
+    static {
+        Arrays.fill(PIECE_OF_CHARACTER, Position.EMPTY);
+        for(int type = Piece.KING; type <= Piece.PAWN; type++) {
+            char character = PIECE_CHARACTERS.charAt(type);
+            PIECE_OF_CHARACTER[character] = Position.makePiece(type, Piece.DARK);
+            PIECE_OF_CHARACTER[Character.toUpperCase(character)] = Position.makePiece(type, Piece.WHITE);
+        }
+    }
+
+    public static void read(Position position, CharSequence fen) {
+        read(position, fen, 0);
+    }
+
+    // Reads the FEN starting at the given index into the position, replacing everything it held before
+    // Piece placement is required, the other fields are optional and default to white at move,
+    // no castling rights, no en passant square and the first move of the game
+    // Returns the index after the last field that was read, so the rest of the text (like the operations
+    // of an EPD line) can be read from there
+    public static int read(Position position, CharSequence text, int start) {
+        position.clear();
+
+        int index = skipSpaces(text, start);
+        index = readPiecePlacement(position, text, index);
+
+        index = skipSpaces(text, index);
+        if(index < text.length() && !Character.isDigit(text.charAt(index))) {
+            char color = text.charAt(index++);
+            if(color == 'w') position.colorAtMove = Piece.WHITE;
+            else if(color == 'b') position.colorAtMove = Piece.DARK;
+            else throw invalid(text, start, "unknown color at move");
+
+            index = readCastlingRights(position, text, skipSpaces(text, index));
+            index = readEnPassantSquare(position, text, skipSpaces(text, index));
+        }
+
+        // Move counters are missing in EPD, which continues with operations instead
+        int counterIndex = skipSpaces(text, index);
+        if(counterIndex < text.length() && Character.isDigit(text.charAt(counterIndex))) {
+            index = counterIndex;
+            while(index < text.length() && Character.isDigit(text.charAt(index))) {
+                position.halfmoveClock = (position.halfmoveClock * 10) + (text.charAt(index++) - '0');
+            }
+
+            counterIndex = skipSpaces(text, index);
+            if(counterIndex < text.length() && Character.isDigit(text.charAt(counterIndex))) {
+                index = counterIndex;
+                int fullmoveNumber = 0;
+                while(index < text.length() && Character.isDigit(text.charAt(index))) {
+                    fullmoveNumber = (fullmoveNumber * 10) + (text.charAt(index++) - '0');
+                }
+                position.fullmoveNumber = Math.max(1, fullmoveNumber);
+            }
+        }
+
+        position.zobristKey = position.calculateZobristKey();
+        return index;
+    }
+
+    private static int readPiecePlacement(Position position, CharSequence text, int start) {
+        int index = start;
+        int square = 0;
+        // Square the current rank ends at, the slash has to come exactly there
+        int endOfRank = 8;
+
+        while(index < text.length() && text.charAt(index) != ' ') {
+            char character = text.charAt(index++);
+
+            if(character == '/') {
+                if(square != endOfRank || square == 64) throw invalid(text, start, "rank with wrong number of squares");
+                endOfRank += 8;
+                continue;
+            }
+
+            if(character >= '1' && character <= '8') {
+                square += character - '0';
+            } else {
+                int piece = character < 128 ? PIECE_OF_CHARACTER[character] : Position.EMPTY;
+                if(piece == Position.EMPTY || square >= endOfRank) throw invalid(text, start, "unknown piece or too many squares");
+                position.addPiece(square++, piece);
+            }
+
+            if(square > endOfRank) throw invalid(text, start, "rank with too many squares");
+        }
+
+        if(square != 64) throw invalid(text, start, "piece placement does not cover the board");
+        if(Long.bitCount(position.pieceBitboards[Piece.WHITE][Piece.KING]) != 1
+                || Long.bitCount(position.pieceBitboards[Piece.DARK][Piece.KING]) != 1) {
+            throw invalid(text, start, "every color needs exactly one king");
+        }
+        return index;
+    }
+
+    private static int readCastlingRights(Position position, CharSequence text, int index) {
+        if(index < text.length() && text.charAt(index) == '-') return index + 1;
+
+        while(index < text.length() && text.charAt(index) != ' ') {
+            switch(text.charAt(index++)) {
+                case 'K' -> position.castlingRights |= Position.castlingBit(Piece.WHITE, Position.KING_SIDE);
+                case 'Q' -> position.castlingRights |= Position.castlingBit(Piece.WHITE, Position.QUEEN_SIDE);
+                case 'k' -> position.castlingRights |= Position.castlingBit(Piece.DARK, Position.KING_SIDE);
+                case 'q' -> position.castlingRights |= Position.castlingBit(Piece.DARK, Position.QUEEN_SIDE);
+                default -> throw invalid(text, index, "unknown castling right");
+            }
+        }
+
+        // Rights that do not fit the pieces would let the move generator castle with pieces that are not there
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            removeCastlingRight(position, color, Position.QUEEN_SIDE);
+            removeCastlingRight(position, color, Position.KING_SIDE);
+        }
+        return index;
+    }
+
+    private static void removeCastlingRight(Position position, int color, int side) {
+        if(position.squares[Position.CASTLING_KING_SQUARES[color]] == Position.makePiece(Piece.KING, color)
+                && position.squares[Position.CASTLING_ROOK_SQUARES[color][side]] == Position.makePiece(Piece.ROOK, color)) return;
+        position.castlingRights &= ~Position.castlingBit(color, side);
+    }
+
+    private static int readEnPassantSquare(Position position, CharSequence text, int index) {
+        if(index < text.length() && text.charAt(index) == '-') return index + 1;
+        if(index + 1 >= text.length()) throw invalid(text, index, "en passant square is missing");
+
+        int file = text.charAt(index) - 'a';
+        int rank = '8' - text.charAt(index + 1);
+        // Only squares a pawn can just have skipped are possible
+        int expectedRank = position.colorAtMove == Piece.WHITE ? 2 : 5;
+        if(file < 0 || file > 7 || rank != expectedRank) throw invalid(text, index, "impossible en passant square");
+
+        int colorThatMoved = position.colorAtMove == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        position.setEnPassantSquare((rank * 8) + file, colorThatMoved);
+        return index + 2;
+    }
+
+    private static int skipSpaces(CharSequence text, int index) {
+        while(index < text.length() && Character.isWhitespace(text.charAt(index))) index++;
+        return index;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + text.subSequence(start, text.length()));
+    }
+
+    public static String write(Position position) {
+        StringBuilder builder = new StringBuilder(90);
+        write(position, builder);
+        return builder.toString();
+    }
+
+    // Appends all six fields of the position to the builder
+    // The en passant square is only written if a pawn can capture there, as it is only stored then
+    public static void write(Position position, StringBuilder builder) {
+        for(int rank = 0; rank < 8; rank++) {
+            if(rank > 0) builder.append('/');
+
+            int emptySquares = 0;
+            for(int file = 0; file < 8; file++) {
+                int piece = position.squares[(rank * 8) + file];
+                if(piece == Position.EMPTY) {
+                    emptySquares++;
+                    continue;
+                }
+
+                if(emptySquares > 0) builder.append((char) ('0' + emptySquares));
+                emptySquares = 0;
+                char character = PIECE_CHARACTERS.charAt(Position.typeOf(piece));
+                builder.append(Position.colorOf(piece) == Piece.WHITE ? Character.toUpperCase(character) : character);
+            }
+            if(emptySquares > 0) builder.append((char) ('0' + emptySquares));
+        }
+
+        builder.append(position.colorAtMove == Piece.WHITE ? " w " : " b ");
+
+        if(position.castlingRights == 0) builder.append('-');
+        if(position.canCastle(Piece.WHITE, Position.KING_SIDE)) builder.append('K');
+        if(position.canCastle(Piece.WHITE, Position.QUEEN_SIDE)) builder.append('Q');
+        if(position.canCastle(Piece.DARK, Position.KING_SIDE)) builder.append('k');
+        if(position.canCastle(Piece.DARK, Position.QUEEN_SIDE)) builder.append('q');
+
+        builder.append(' ');
+        if(position.enPassantSquare == -1) {
+            builder.append('-');
+        } else {
+            builder.append((char) ('a' + (position.enPassantSquare % 8))).append((char) ('8' - (position.enPassantSquare / 8)));
+        }
+
+        builder.append(' ').append(position.halfmoveClock).append(' ').append(position.fullmoveNumber);
+    }
+}
@@ -2,23 +2,55 @@ package com.juliuswendland.chessai;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import static com.juliuswendland.chessai.Resources.loadIcons;
 
 public class Main {
-    public static void main(String[] args) {
-        EventQueue.invokeLater(Main::createAndShowUI);
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String TITLE = "Chess AI made by Julius Wendland";
+
+    public static void main(String[] args) throws IOException {
+        // Engine without a window, for chess GUIs and tournament managers
+        if(args.length > 0 && args[0].equals("uci")) {
+            Uci.main(args);
+            return;
+        }
+
+        // Optional opening book: --book <file.bin>
+        PolyglotBook book = null;
+        String bookFile = valueAfter(args, "--book");
+        if(bookFile != null) {
+            try {
+                book = PolyglotBook.open(Path.of(bookFile));
+            } catch (IOException e) {
+                System.err.println("Playing without opening book: " + e.getMessage());
+            }
+        }
+
+        PolyglotBook openingBook = book;
+        EventQueue.invokeLater(() -> createAndShowUI(openingBook));
+    }
+
+    private static String valueAfter(String[] args, String option) {
+        for(int i = 0; i + 1 < args.length; i++) {
+            if(args[i].equals(option)) return args[i + 1];
+        }
+        return null;
     }
 
-    public static void createAndShowUI() {
+    public static void createAndShowUI(PolyglotBook book) {
         loadIcons();
 
         JFrame mainFrame = new JFrame();
-        mainFrame.setTitle("Chess AI made by Julius Wendland");
+        mainFrame.setTitle(TITLE);
         mainFrame.setVisible(true);
         mainFrame.requestFocus();
         mainFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        mainFrame.add(new Board("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"));
+        Board board = new Board(START_POSITION);
+        board.engine.setBook(book);
+        mainFrame.add(board);
         mainFrame.pack();
         mainFrame.setLocationRelativeTo(null);
     }
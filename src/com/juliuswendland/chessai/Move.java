@@ -1,3 +1,45 @@
 package com.juliuswendland.chessai;
 
-public record Move(Square startSquare, Square targetSquare, int moveFlag) {}
+public record Move(int startSquare, int targetSquare, int moveFlag) {
+    // Moves can also be packed into a single int, so move lists don't need any objects:
+    // bits 0-5 hold the start square, bits 6-11 the target square and bits 12-15 the move flag
+    // The promotion piece is part of the move flag, see MoveFlags.promotionType()
+    // Start and target square are never equal for a real move, so 0 can mark that there is no move
+    public static final int NONE = 0;
+
+    public static int encode(int startSquare, int targetSquare, int moveFlag) {
+        return startSquare | (targetSquare << 6) | (moveFlag << 12);
+    }
+
+    public static int startSquareOf(int move) {
+        return move & 0x3F;
+    }
+
+    public static int targetSquareOf(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int moveFlagOf(int move) {
+        return move >>> 12;
+    }
+
+    public static Move decode(int move) {
+        return new Move(startSquareOf(move), targetSquareOf(move), moveFlagOf(move));
+    }
+
+    // Coordinate notation like e2e4 or e7e8q, as used by the UCI protocol
+    public static String toUci(int move) {
+        String notation = squareName(startSquareOf(move)) + squareName(targetSquareOf(move));
+        int moveFlag = moveFlagOf(move);
+        if(!MoveFlags.isPromotion(moveFlag)) return notation;
+        return notation + "kqbnrp".charAt(MoveFlags.promotionType(moveFlag));
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square % 8)) + (char) ('8' - (square / 8));
+    }
+
+    public int encode() {
+        return encode(startSquare, targetSquare, moveFlag);
+    }
+}
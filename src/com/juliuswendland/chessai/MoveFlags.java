@@ -6,11 +6,32 @@ public class MoveFlags {
     public static final int EN_PASSANT = 2;
     public static final int CASTLE_KING_SIDE = 3;
     public static final int CASTLE_QUEEN_SIDE = 4;
-    public static final int PROMOTE_PLAYER = 5;
 
-    // Flags specifically for AI moves
-    public static final int PROMOTE_QUEEN = 6;
-    public static final int PROMOTE_ROOK = 7;
-    public static final int PROMOTE_BISHOP = 8;
-    public static final int PROMOTE_KNIGHT = 9;
+    // Every promotion has its own flag so both the player and the AI can pick the piece
+    public static final int PROMOTE_QUEEN = 5;
+    public static final int PROMOTE_ROOK = 6;
+    public static final int PROMOTE_BISHOP = 7;
+    public static final int PROMOTE_KNIGHT = 8;
+
+    public static boolean isPromotion(int moveFlag) {
+        return moveFlag >= PROMOTE_QUEEN;
+    }
+
+    public static int promotionType(int moveFlag) {
+        return switch (moveFlag) {
+            case PROMOTE_ROOK -> Piece.ROOK;
+            case PROMOTE_BISHOP -> Piece.BISHOP;
+            case PROMOTE_KNIGHT -> Piece.KNIGHT;
+            default -> Piece.QUEEN;
+        };
+    }
+
+    public static int promotionFlag(int type) {
+        return switch (type) {
+            case Piece.ROOK -> PROMOTE_ROOK;
+            case Piece.BISHOP -> PROMOTE_BISHOP;
+            case Piece.KNIGHT -> PROMOTE_KNIGHT;
+            default -> PROMOTE_QUEEN;
+        };
+    }
 }
@@ -1,637 +1,465 @@
 package com.juliuswendland.chessai;
 
-import java.util.Arrays;
 import java.util.LinkedList;
 
 public class MoveGenerator {
-    Board board;
-    LinkedList<Piece> whitePieces = new LinkedList<>();
-    LinkedList<Piece> darkPieces = new LinkedList<>();
-
-    public MoveGenerator(Board board) {
-        this.board = board;
+    // No chess position has more legal moves than this
+    public static final int MAX_MOVES = 256;
+    // Kinds of moves that can be generated, noisy moves are captures and promotions
+    public static final int NOISY_MOVES = 1;
+    public static final int QUIET_MOVES = 2;
+    public static final int ALL_MOVES = NOISY_MOVES | QUIET_MOVES;
+
+    Position position;
+    // Enemy pieces giving check and friendly pieces pinned to the king, see calculateCheckersAndPins()
+    // Pseudo-legal generation leaves them out until the first move is checked by isPseudoLegalMoveLegal()
+    private long checkers;
+    private long pinnedPieces;
+    private boolean checkersAndPinsCalculated;
+    // King the pins were calculated for, pinned pieces can only move along the line through it
+    private int kingSquare;
+    // Buffer moves are currently written to and the number of moves written to it
+    private int[] moves;
+    private int numberOfMoves;
+    // Kinds of moves the current call generates
+    private boolean generateNoisy;
+    private boolean generateQuiet;
+
+    public MoveGenerator(Position position) {
+        this.position = position;
     }
 
     public LinkedList<Move> generateLegalMoves() {
-        splitPieces();
+        int[] encodedMoves = new int[MAX_MOVES];
+        int count = generateLegalMoves(encodedMoves);
 
         LinkedList<Move> legalMoves = new LinkedList<>();
-        LinkedList<Piece> friendlyPieces = board.colorAtMove == Piece.WHITE ? whitePieces : darkPieces;
-        LinkedList<Piece> enemyPieces = board.colorAtMove == Piece.WHITE ? darkPieces : whitePieces;
-
-        Piece friendlyKing = null;
-        for(Piece piece : friendlyPieces) {
-            if(piece.getType() == Piece.KING) {
-                friendlyKing = piece;
-            }
+        for(int i = 0; i < count; i++) {
+            legalMoves.add(Move.decode(encodedMoves[i]));
         }
+        return legalMoves;
+    }
+
+    // Writes all legal moves encoded as ints to the given buffer and returns how many there are
+    // Does not allocate anything, so it can be used with the buffers of MoveLists in a search
+    public int generateLegalMoves(int[] moves) {
+        return generateLegalMoves(moves, ALL_MOVES);
+    }
+
+    // Same as above, but only generates the given kinds of moves
+    // Noisy and quiet moves together are exactly all legal moves
+    public int generateLegalMoves(int[] moves, int kinds) {
+        this.moves = moves;
+        numberOfMoves = 0;
+        generateNoisy = (kinds & NOISY_MOVES) != 0;
+        generateQuiet = (kinds & QUIET_MOVES) != 0;
+
+        int friendlyColor = position.colorAtMove;
+        int enemyColor = friendlyColor == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        long[] friendlyBitboards = position.pieceBitboards[friendlyColor];
+        long friendlyPieces = position.colorBitboards[friendlyColor];
+        long enemyPieces = position.colorBitboards[enemyColor];
+        long occupiedSquares = friendlyPieces | enemyPieces;
+        // Target squares of the kinds of moves that are generated, pawns are handled separately
+        long kindMask = (generateNoisy ? enemyPieces : 0L) | (generateQuiet ? ~occupiedSquares : 0L);
 
         // Something went wrong, no king exists
-        if(friendlyKing == null) {
+        if(friendlyBitboards[Piece.KING] == 0) {
             throw new Error("Something went wrong. Pleases restart the game and report the error");
         }
+        int friendlyKingSquare = Long.numberOfTrailingZeros(friendlyBitboards[Piece.KING]);
 
         // First generate all possible king moves
-        // -> Calculate all squares attacked by the opponent by removing and later adding the friendly king to the board
-        Square friendlyKingSquare = (Square) board.getComponent(friendlyKing.positionIndex);
-        friendlyKingSquare.removePiece();
-        LinkedList<Square> kingDangerSquares = generateAttackedSquares();
-        friendlyKingSquare.addPiece(friendlyKing);
         // -> King cannot move to squares attacked by the opponent
-        for(Square square : generateKingSquares(friendlyKing, false)) {
-            if(kingDangerSquares.contains(square)) continue;
-            legalMoves.add(new Move(friendlyKingSquare, square, MoveFlags.NONE));
+        // -> Attacks are looked up with the friendly king removed from the board,
+        //    otherwise the king could step back along the ray of a sliding piece giving check
+        long occupancyWithoutKing = occupiedSquares ^ friendlyBitboards[Piece.KING];
+        long kingSquares = Bitboards.KING_ATTACKS[friendlyKingSquare] & ~friendlyPieces & kindMask;
+        for(; kingSquares != 0; kingSquares &= kingSquares - 1) {
+            int targetSquare = Long.numberOfTrailingZeros(kingSquares);
+            if(position.isSquareAttacked(targetSquare, enemyColor, occupancyWithoutKing)) continue;
+            addMove(Move.encode(friendlyKingSquare, targetSquare, MoveFlags.NONE));
         }
 
-        // Calculate whether friendly king is in check and store every piece giving check
-        LinkedList<Piece> piecesGivingCheck = calculatePiecesGivingCheck(friendlyKing);
+        // Find the pieces giving check and the pinned pieces at once
+        calculateCheckersAndPins(friendlyKingSquare, friendlyColor);
+        checkersAndPinsCalculated = true;
+        int numberOfChecks = Long.bitCount(checkers);
 
         // If more than one piece checks the king the only piece able to move is the king
-        if(piecesGivingCheck.size() > 1) return legalMoves;
+        if(numberOfChecks > 1) return numberOfMoves;
 
-        LinkedList<Piece> captureMask = new LinkedList<>();
-        LinkedList<Square> pushMask = new LinkedList<>();
+        long captureMask;
+        long pushMask;
 
         // King is in check by one piece
-        if(piecesGivingCheck.size() == 1) {
-            Piece pieceGivingCheck = piecesGivingCheck.get(0);
+        if(numberOfChecks == 1) {
             // Piece giving check can be captured
-            captureMask.add(pieceGivingCheck);
+            captureMask = checkers;
             // If it is a sliding piece the check can be blocked
-            if(pieceGivingCheck.isSlidingPiece()) {
-                pushMask.addAll(board.getSquaresBetweenTwoPieces(pieceGivingCheck, friendlyKing));
-            }
-            // If it is not a sliding piece we can only capture, not block
+            // Squares between the king and a knight or pawn are always empty, so those can only be captured
+            pushMask = Bitboards.BETWEEN[friendlyKingSquare][Long.numberOfTrailingZeros(checkers)];
         }
         // King is not in check, every square is OK to move to
         else {
-            captureMask.addAll(enemyPieces);
-            for(int i = 0; i < 64; i++) {
-                pushMask.add((Square) board.getComponent(i));
-            }
+            captureMask = enemyPieces;
+            pushMask = ~occupiedSquares;
         }
 
-        // Calculate moves for pinned pieces
-        legalMoves.addAll(generateMovesForPinnedPieces(friendlyKing, friendlyPieces));
+        long targetMask = (captureMask | pushMask) & kindMask;
 
-        // Remove the king from the rest of move generation
-        friendlyPieces.remove(friendlyKing);
+        // Pinned knights can never move along the pin
+        for(long knights = friendlyBitboards[Piece.KNIGHT] & ~pinnedPieces; knights != 0; knights &= knights - 1) {
+            int square = Long.numberOfTrailingZeros(knights);
+            addMoves(square, Bitboards.KNIGHT_ATTACKS[square] & targetMask);
+        }
 
-        // Calculate the moves for the remaining pieces
-        for(Piece piece : friendlyPieces) {
-            LinkedList<Square> squares;
+        long diagonalSliders = friendlyBitboards[Piece.BISHOP] | friendlyBitboards[Piece.QUEEN];
+        for(long sliders = diagonalSliders; sliders != 0; sliders &= sliders - 1) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            long squares = Bitboards.bishopAttacks(square, occupiedSquares) & targetMask & allowedSquares(square);
+            addMoves(square, squares);
+        }
 
-            switch (piece.getType()) {
-                default -> squares = generateSlidingSquares(piece, false, piece.getType());
-                case Piece.KNIGHT -> squares = generateKnightSquares(piece, false);
-                case Piece.PAWN -> {
-                    squares = generatePawnSquares(piece, false);
-                    Move move = generateDoublePawnPush(piece, pushMask);
-                    if(move == null) break;
-                    legalMoves.add(move);
-                }
-            }
+        long straightSliders = friendlyBitboards[Piece.ROOK] | friendlyBitboards[Piece.QUEEN];
+        for(long sliders = straightSliders; sliders != 0; sliders &= sliders - 1) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            long squares = Bitboards.rookAttacks(square, occupiedSquares) & targetMask & allowedSquares(square);
+            addMoves(square, squares);
+        }
 
-            for(Square square : squares) {
-                Square startSquare = (Square) board.getComponent(piece.positionIndex);
-                if(!pushMask.contains(square) && !captureMask.contains(square.getPiece())) continue;
-
-                // Generate promotion moves
-                if(piece.getType() == Piece.PAWN) {
-                    if(square.getRank() == 7 || square.getRank() == 0) {
-                        // If the AI promotes there have to be separate moves for evaluation to function properly
-                        if(piece.getColor() == Piece.WHITE) {
-                            legalMoves.add(new Move(startSquare, square, MoveFlags.PROMOTE_PLAYER));
-                        }
-                        else {
-                            legalMoves.add(new Move(startSquare, square, MoveFlags.PROMOTE_QUEEN));
-                            legalMoves.add(new Move(startSquare, square, MoveFlags.PROMOTE_BISHOP));
-                            legalMoves.add(new Move(startSquare, square, MoveFlags.PROMOTE_ROOK));
-                            legalMoves.add(new Move(startSquare, square, MoveFlags.PROMOTE_KNIGHT));
-                        }
-                        continue;
-                    }
-                }
+        generatePawnMoves(friendlyColor, pushMask, captureMask);
 
-                legalMoves.add(new Move(startSquare, square, MoveFlags.NONE));
-            }
+        if(numberOfChecks == 0 && generateQuiet) {
+            generateCastleMoves(friendlyKingSquare);
         }
 
-        if(piecesGivingCheck.size() == 0) {
-            legalMoves.addAll(generateCastleMoves(friendlyKing, kingDangerSquares));
+        if(generateNoisy) {
+            generateEnPassantMoves(friendlyKingSquare);
         }
 
-        legalMoves.addAll(board.enPassantMoves);
-        board.enPassantMoves.clear();
-
-        return legalMoves;
+        return numberOfMoves;
     }
 
-    private LinkedList<Piece> calculatePiecesGivingCheck(Piece friendlyKing) {
-        LinkedList<Piece> piecesGivingCheck = new LinkedList<>();
-
-        // Calculate moves from king square for every kind of piece
-        // If this lands on an enemy piece, this piece is giving check
-        for(Square square : generateSlidingSquares(friendlyKing, true, Piece.BISHOP)) {
-            if(square.getPiece() == null) continue;
-            if(square.getPiece().getColor() == board.colorAtMove) continue;
-            if(!(square.getPiece().getType() == Piece.BISHOP || square.getPiece().getType() == Piece.QUEEN)) continue;
-            piecesGivingCheck.add(square.getPiece());
-        }
-        for(Square square : generateSlidingSquares(friendlyKing, true, Piece.ROOK)) {
-            if(square.getPiece() == null) continue;
-            if(square.getPiece().getColor() == board.colorAtMove) continue;
-            if(!(square.getPiece().getType() == Piece.ROOK || square.getPiece().getType() == Piece.QUEEN)) continue;
-            piecesGivingCheck.add(square.getPiece());
+    // Writes the moves of the given kinds to the buffer without checking whether they leave the own king attacked,
+    // so no time is spent on moves that are never searched because an earlier move caused a cutoff
+    // Every move has to be checked by isPseudoLegalMoveLegal() before it is made,
+    // the moves of the color at move in a legal position are then exactly the ones of generateLegalMoves()
+    public int generatePseudoLegalMoves(int[] moves, int kinds) {
+        this.moves = moves;
+        numberOfMoves = 0;
+        generateNoisy = (kinds & NOISY_MOVES) != 0;
+        generateQuiet = (kinds & QUIET_MOVES) != 0;
+
+        int friendlyColor = position.colorAtMove;
+        int enemyColor = friendlyColor == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        long[] friendlyBitboards = position.pieceBitboards[friendlyColor];
+        long friendlyPieces = position.colorBitboards[friendlyColor];
+        long enemyPieces = position.colorBitboards[enemyColor];
+        long occupiedSquares = friendlyPieces | enemyPieces;
+        long targetMask = (generateNoisy ? enemyPieces : 0L) | (generateQuiet ? ~occupiedSquares : 0L);
+        int friendlyKingSquare = Long.numberOfTrailingZeros(friendlyBitboards[Piece.KING]);
+
+        addMoves(friendlyKingSquare, Bitboards.KING_ATTACKS[friendlyKingSquare] & targetMask);
+
+        for(long knights = friendlyBitboards[Piece.KNIGHT]; knights != 0; knights &= knights - 1) {
+            int square = Long.numberOfTrailingZeros(knights);
+            addMoves(square, Bitboards.KNIGHT_ATTACKS[square] & targetMask);
         }
-        for(Square square : generatePawnSquares(friendlyKing, true)) {
-            if(square.getPiece() == null) continue;
-            if(square.getPiece().getColor() == board.colorAtMove) continue;
-            if(!(square.getPiece().getType() == Piece.PAWN)) continue;
-            piecesGivingCheck.add(square.getPiece());
+        for(long sliders = friendlyBitboards[Piece.BISHOP] | friendlyBitboards[Piece.QUEEN]; sliders != 0; sliders &= sliders - 1) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            addMoves(square, Bitboards.bishopAttacks(square, occupiedSquares) & targetMask);
         }
-        for(Square square : generateKnightSquares(friendlyKing, true)) {
-            if(square.getPiece() == null) continue;
-            if(square.getPiece().getColor() == board.colorAtMove) continue;
-            if(!(square.getPiece().getType() == Piece.KNIGHT)) continue;
-            piecesGivingCheck.add(square.getPiece());
+        for(long sliders = friendlyBitboards[Piece.ROOK] | friendlyBitboards[Piece.QUEEN]; sliders != 0; sliders &= sliders - 1) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            addMoves(square, Bitboards.rookAttacks(square, occupiedSquares) & targetMask);
         }
-        // A king cannot possibly check the enemy king
-
-        return piecesGivingCheck;
-    }
-
-    private LinkedList<Move> generateMovesForPinnedPieces(Piece friendlyKing, LinkedList<Piece> friendlyPieces) {
-        LinkedList<Move> moves = new LinkedList<>();
-        LinkedList<Square> squaresToMoveTo = new LinkedList<>();
-
-        Square friendlyKingSquare = (Square) board.getComponent(friendlyKing.positionIndex);
-        int[] numberSquaresToBorder = friendlyKingSquare.getNumberOfSquaresToBorder();
-        int index;
-        Piece pinnedPiece; // A piece that may be pinned by another piece
-
-        // Generate moves for vertically / horizontally pinned pieces
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
-            // Go in every direction from friendly king until border is reached
-            pinnedPiece = null;
-            index = friendlyKing.positionIndex;
-            boolean isDiagonal = directionIndex % 2 == 1;
-            int specificPieceType = isDiagonal ? Piece.BISHOP : Piece.ROOK;
-            squaresToMoveTo.clear();
-
-            for(int i = 0; i < numberSquaresToBorder[directionIndex]; i++) {
-                index += Board.OFFSETS[directionIndex];
-                Square square = (Square) board.getComponent(index);
-                Piece piece = square.getPiece();
-                squaresToMoveTo.add(square);
-
-                if(piece == null) continue;
-                if(piece.getColor() == friendlyKing.getColor()) {
-                    // Two friendly pieces in this direction, piece is not pinned
-                    if(pinnedPiece != null) break;
-                    // This piece may be pinned
-                    pinnedPiece = piece;
-                    continue;
-                }
 
-                if(pinnedPiece == null) break;
-                if(!piece.isSlidingPiece()) break;
+        // Without pins every pawn can move anywhere
+        checkersAndPinsCalculated = false;
+        pinnedPieces = 0L;
+        generatePawnMoves(friendlyColor, ~occupiedSquares, enemyPieces);
 
-                // Piece can only be pinned by queens or Rooks
-                if(piece.getType() != Piece.QUEEN && piece.getType() != specificPieceType) break;
-                Square pinnedPieceSquare = (Square) board.getComponent(pinnedPiece.positionIndex);
-                Square squareOfPinningPiece = (Square) board.getComponent(piece.positionIndex);
-
-                if(pinnedPiece.getType() == Piece.QUEEN || pinnedPiece.getType() == specificPieceType) {
-                    // Piece can only move along the diagonal line
-                    for(Square squareToMoveTo : squaresToMoveTo) {
-                        if(squareToMoveTo == pinnedPieceSquare) continue;
-                        moves.add(new Move(pinnedPieceSquare, squareToMoveTo, MoveFlags.NONE));
-                    }
-                }
-                else if(pinnedPiece.getType() == Piece.PAWN) {
-                    // Pawn can only capture the pinning piece if next to it
-                    int[] allowedDirections;
-                    if(isDiagonal) {
-                        allowedDirections = pinnedPiece.getColor() == Piece.WHITE ? new int[]{1, 3} : new int[]{5, 7};
-                    } else {
-                        allowedDirections = new int[]{pinnedPiece.getColor() == Piece.WHITE ? Directions.TOP : Directions.BOTTOM};
-                    }
-
-                    int finalDirectionIndex = directionIndex;
-                    if(Arrays.stream(allowedDirections).anyMatch(direction -> direction == finalDirectionIndex)) {
-                        int indexOfSquareAttackedByPawn = pinnedPiece.positionIndex + Board.OFFSETS[directionIndex];
-                        Square squareAttackedByPawn = (Square) board.getComponent(indexOfSquareAttackedByPawn);
-
-                        if(squareAttackedByPawn == squareOfPinningPiece) {
-                            moves.add(new Move(pinnedPieceSquare, squareOfPinningPiece, MoveFlags.NONE));
-                        }
-                    }
-                }
-
-                // Remove the pinned piece from the rest of move generation
-                // Filter is necessary to remove the specific piece, not just the first occurring piece of the same type
-                Piece finalPinnedPiece = pinnedPiece;
-                friendlyPieces.removeIf(e -> e.positionIndex == finalPinnedPiece.positionIndex);
-            }
+        // Castles and en passant captures are rare, so they are checked completely right away
+        if(generateQuiet && (position.castlingRights & Position.castlingRightsOf(friendlyColor)) != 0
+                && !position.isSquareAttacked(friendlyKingSquare, enemyColor, occupiedSquares)) {
+            generateCastleMoves(friendlyKingSquare);
+        }
+        if(generateNoisy) {
+            generateEnPassantMoves(friendlyKingSquare);
         }
 
-        return moves;
+        return numberOfMoves;
     }
 
-    private LinkedList<Move> generateEnPassantMoves(Square squareOfCapturedPiece) {
-        // This is called when a double pawn push move has been made
-        LinkedList<Move> moves = new LinkedList<>();
-        LinkedList<Move> legalMoves = new LinkedList<>();
-
-        Piece pieceCaptured = squareOfCapturedPiece.getPiece();
-        // Pawn must be captured by an enemy pawn, thus the capture needs to be in the opposite direction
-        int directionToCaptureIn = pieceCaptured.getColor() == Piece.WHITE ? Directions.BOTTOM : Directions.TOP;
-
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.RIGHT; directionIndex += 4) {
-            int indexOfSquareToLookAt = squareOfCapturedPiece.getIndex() + Board.OFFSETS[directionIndex];
-            Square squareToLookAt = (Square) board.getComponent(indexOfSquareToLookAt);
+    // Whether a move of the last generatePseudoLegalMoves() call does not leave the own king attacked
+    // The position must not have changed since, makes and unmakes of moves in between are fine
+    public boolean isPseudoLegalMoveLegal(int move) {
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+        int friendlyColor = position.colorAtMove;
+        int enemyColor = friendlyColor == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        long king = position.pieceBitboards[friendlyColor][Piece.KING];
+        int friendlyKingSquare = Long.numberOfTrailingZeros(king);
+
+        // Castles and en passant captures are only generated when legal
+        if(moveFlag == MoveFlags.EN_PASSANT || moveFlag == MoveFlags.CASTLE_KING_SIDE
+                || moveFlag == MoveFlags.CASTLE_QUEEN_SIDE) return true;
+
+        // The king is looked at with itself removed from the board, so it cannot step back along a checking ray
+        if(startSquare == friendlyKingSquare) {
+            return !position.isSquareAttacked(targetSquare, enemyColor, position.occupiedSquares() ^ king);
+        }
 
-            if(squareToLookAt.getPiece() == null) continue;
-            if(squareToLookAt.getPiece().getType() != Piece.PAWN) continue;
-            if(squareToLookAt.getPiece().getColor() == pieceCaptured.getColor()) continue;
+        if(!checkersAndPinsCalculated) {
+            calculateCheckersAndPins(friendlyKingSquare, friendlyColor);
+            checkersAndPinsCalculated = true;
+        }
 
-            int indexOfSquareToCaptureAt = squareOfCapturedPiece.getIndex() + Board.OFFSETS[directionToCaptureIn];
-            Square squareToCaptureAt = (Square) board.getComponent(indexOfSquareToCaptureAt);
-            moves.add(new Move(squareToLookAt, squareToCaptureAt, MoveFlags.EN_PASSANT));
+        long target = Bitboards.squareBit(targetSquare);
+        if(checkers != 0) {
+            // Only the king can escape a double check, a single check has to be captured or blocked
+            if((checkers & (checkers - 1)) != 0) return false;
+            long evasionSquares = checkers | Bitboards.BETWEEN[friendlyKingSquare][Long.numberOfTrailingZeros(checkers)];
+            if((evasionSquares & target) == 0) return false;
         }
+        return (target & allowedSquares(startSquare)) != 0;
+    }
 
-        // Check if en passant moves are valid
-        for(Move move : moves) {
-            // remove both pawns from the board
-            squareOfCapturedPiece.removePiece();
-            Piece movingPiece = move.startSquare().getPiece();
-            move.startSquare().removePiece();
-
-            int[] numberSquaresToBorder = move.startSquare().getNumberOfSquaresToBorder();
-            Piece king = null;
-            Piece attacker = null;
-
-            // Go left and right from one of the pawns
-            for(int directionIndex = Directions.LEFT; directionIndex <= Directions.RIGHT; directionIndex += 4) {
-                int index = move.startSquare().getIndex();
-                for(int i = 0; i < numberSquaresToBorder[directionIndex]; i++) {
-                    index += Board.OFFSETS[directionIndex];
-                    Square square = (Square) board.getComponent(index);
-                    Piece piece = square.getPiece();
-
-                    if(square.getPiece() == null) continue;
-
-                    // Friendly king must be on one side of the pawns
-                    if(piece.getType() == Piece.KING && piece.getColor() == movingPiece.getColor()) {
-                        king = piece;
-                    }
-
-                    // Attacking piece (horizontal slider) must be on the other side
-                    if(piece.getColor() == movingPiece.getColor()) break;
-                    if(piece.getType() == Piece.QUEEN || piece.getType() == Piece.ROOK) break;
-                    attacker = piece;
-                }
+    // Looks from the king like every piece type would, through friendly pieces for sliders,
+    // so enemy sliders with nothing in between give check and those with one friendly piece in between pin it
+    private void calculateCheckersAndPins(int friendlyKingSquare, int friendlyColor) {
+        int enemyColor = friendlyColor == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        long[] enemyBitboards = position.pieceBitboards[enemyColor];
+        long friendlyPieces = position.colorBitboards[friendlyColor];
+        long enemyPieces = position.colorBitboards[enemyColor];
+
+        kingSquare = friendlyKingSquare;
+        checkers = (Bitboards.KNIGHT_ATTACKS[friendlyKingSquare] & enemyBitboards[Piece.KNIGHT])
+                | (Bitboards.PAWN_ATTACKS[friendlyColor][friendlyKingSquare] & enemyBitboards[Piece.PAWN]);
+        pinnedPieces = 0L;
+
+        // Friendly pieces are transparent, enemy pieces block the view
+        long straightSliders = Bitboards.rookAttacks(friendlyKingSquare, enemyPieces)
+                & (enemyBitboards[Piece.ROOK] | enemyBitboards[Piece.QUEEN]);
+        long diagonalSliders = Bitboards.bishopAttacks(friendlyKingSquare, enemyPieces)
+                & (enemyBitboards[Piece.BISHOP] | enemyBitboards[Piece.QUEEN]);
+
+        for(long sliders = straightSliders | diagonalSliders; sliders != 0; sliders &= sliders - 1) {
+            int sliderSquare = Long.numberOfTrailingZeros(sliders);
+            long squaresInBetween = Bitboards.BETWEEN[friendlyKingSquare][sliderSquare];
+            long blockers = squaresInBetween & friendlyPieces;
+
+            if(blockers == 0) {
+                checkers |= Bitboards.squareBit(sliderSquare);
+            } else if((blockers & (blockers - 1)) == 0) {
+                // Only the one and only piece in between is pinned
+                pinnedPieces |= blockers;
             }
-
-            // add pawns back to the board
-            move.startSquare().addPiece(movingPiece);
-            squareOfCapturedPiece.addPiece(pieceCaptured);
-
-            // King would be in check, this move is illegal
-            if(king != null || attacker != null) continue;
-            legalMoves.add(move);
         }
-
-        return legalMoves;
     }
 
-    private LinkedList<Move> generateCastleMoves(Piece king, LinkedList<Square> attackedSquares) {
-        LinkedList<Move> moves = new LinkedList<>();
-
-        if(king.hasMovesPreviously) return moves;
-
-        Square kingSquare = (Square) board.getComponent(king.positionIndex);
-        int[] numberSquaresToBorder = kingSquare.getNumberOfSquaresToBorder();
-
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.RIGHT; directionIndex += 4) {
-            int index = kingSquare.getIndex();
-            for(int i = 0; i < numberSquaresToBorder[directionIndex]; i++) {
-                int castleDirectionIndex = directionIndex == Directions.LEFT ? 0 : 1;
-                if(!board.possibleCastles[king.getColor()][castleDirectionIndex]) break;
-
-                index += Board.OFFSETS[directionIndex];
-                Square square = (Square) board.getComponent(index);
-
-                // King cannot move through or end up in check
-                if(attackedSquares.contains(square) && i <= 1) break;
+    private long allowedSquares(int square) {
+        if((pinnedPieces & Bitboards.squareBit(square)) == 0) return -1L;
+        // Pinned piece can only move along the line towards the pinning piece, capturing it included
+        // The line also continues behind the king, but no piece can get there without passing the king
+        return Bitboards.LINE[kingSquare][square];
+    }
 
-                if(square.getPiece() == null) continue;
+    private void generatePawnMoves(int color, long pushMask, long captureMask) {
+        int directionIndex = color == Piece.WHITE ? Directions.TOP : Directions.BOTTOM;
+        int forward = Directions.OFFSETS[directionIndex];
+        int startRank = color == Piece.WHITE ? 6 : 1;
+        long emptySquares = ~position.occupiedSquares();
+
+        for(long pawns = position.pieceBitboards[color][Piece.PAWN]; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            long allowedSquares = allowedSquares(square);
+
+            // Since pawns reaching the end of the board get promoted
+            // there is no need to worry about there being enough squares between it and the end
+            int singlePushSquare = square + forward;
+            if((emptySquares & Bitboards.squareBit(singlePushSquare)) != 0) {
+                // Promotions are noisy even without a capture
+                boolean promotion = singlePushSquare / 8 == 0 || singlePushSquare / 8 == 7;
+                if((promotion ? generateNoisy : generateQuiet)
+                        && (pushMask & allowedSquares & Bitboards.squareBit(singlePushSquare)) != 0) {
+                    addPawnMove(square, singlePushSquare);
+                }
 
-                // There cannot be any pieces between king and rook
-                if(square.getPiece().getType() != Piece.ROOK) break;
-                if(square.getPiece().getColor() != king.getColor()) break;
-                // Rook must not have moved previously
-                if(square.getPiece().hasMovesPreviously) break;
+                // Separate double pawn push is necessary to add the move flag
+                int doublePushSquare = singlePushSquare + forward;
+                if(generateQuiet && square / 8 == startRank
+                        && (emptySquares & pushMask & allowedSquares & Bitboards.squareBit(doublePushSquare)) != 0) {
+                    addMove(Move.encode(square, doublePushSquare, MoveFlags.DOUBLE_PAWN_PUSH));
+                }
+            }
 
-                int moveFlag = directionIndex == Directions.LEFT ? MoveFlags.CASTLE_QUEEN_SIDE : MoveFlags.CASTLE_KING_SIDE;
-                int squareToMoveToIndex = kingSquare.getIndex() + (Board.OFFSETS[directionIndex] * 2);
-                Square squareToMoveTo =  (Square) board.getComponent(squareToMoveToIndex);
-                moves.add(new Move(kingSquare, squareToMoveTo, moveFlag));
-                break;
+            // Pawn only moves diagonally when capturing a piece
+            if(!generateNoisy) continue;
+            long captures = Bitboards.PAWN_ATTACKS[color][square] & captureMask & allowedSquares;
+            for(; captures != 0; captures &= captures - 1) {
+                addPawnMove(square, Long.numberOfTrailingZeros(captures));
             }
         }
-
-        return moves;
     }
 
-    private Move generateDoublePawnPush(Piece piece, LinkedList<Square> pushMask) {
-        // Separate double pawn push method is necessary to add the move flag
-        if(!piece.doubleMovePossible) return null;
-
-        int directionIndex = piece.getColor() == Piece.WHITE ? Directions.TOP : Directions.BOTTOM;
-
-        // Check if double pawn push is blocked by another piece
-        int indexToCheck = piece.positionIndex + Board.OFFSETS[directionIndex];
-        Square squareToCheck = (Square) board.getComponent(indexToCheck);
-        if(squareToCheck.getPiece() != null) return null;
-
-        int index = piece.positionIndex + (Board.OFFSETS[directionIndex] * 2);
-        Square startSquare = (Square) board.getComponent(piece.positionIndex);
-        Square square = (Square) board.getComponent(index);
-
-        if(square.getPiece() != null) return null;
-
-        if(pushMask.contains(square)) {
-            return new Move(startSquare, square, MoveFlags.DOUBLE_PAWN_PUSH);
+    private void addPawnMove(int startSquare, int targetSquare) {
+        int rank = targetSquare / 8;
+        if(rank != 7 && rank != 0) {
+            addMove(Move.encode(startSquare, targetSquare, MoveFlags.NONE));
+            return;
         }
-        return null;
+
+        // Generate promotion moves
+        addMove(Move.encode(startSquare, targetSquare, MoveFlags.PROMOTE_QUEEN));
+        addMove(Move.encode(startSquare, targetSquare, MoveFlags.PROMOTE_BISHOP));
+        addMove(Move.encode(startSquare, targetSquare, MoveFlags.PROMOTE_ROOK));
+        addMove(Move.encode(startSquare, targetSquare, MoveFlags.PROMOTE_KNIGHT));
     }
 
-    private LinkedList<Square> generateAttackedSquares() {
-        LinkedList<Piece> pieces = board.colorAtMove == Piece.WHITE ? darkPieces : whitePieces;
-        LinkedList<Square> attackedSquares = new LinkedList<>();
+    private void generateEnPassantMoves(int friendlyKingSquare) {
+        int enPassantSquare = position.enPassantSquare;
+        if(enPassantSquare == -1) return;
 
-        for(Piece piece : pieces) {
-            switch (piece.getType()) {
-                default -> attackedSquares.addAll(generateSlidingSquares(piece, true, piece.getType()));
-                case Piece.KING -> attackedSquares.addAll(generateKingSquares(piece, true));
-                case Piece.KNIGHT -> attackedSquares.addAll(generateKnightSquares(piece, true));
-                case Piece.PAWN -> attackedSquares.addAll(generatePawnSquares(piece, true));
-            }
-        }
-        return attackedSquares;
-    }
+        int friendlyColor = position.colorAtMove;
+        int enemyColor = friendlyColor == Piece.WHITE ? Piece.DARK : Piece.WHITE;
 
-    private LinkedList<Square> generateSlidingSquares(Piece piece, boolean kingDangerSquares, int typeOfPiece) {
-        LinkedList<Square> squares = new LinkedList<>();
+        // The captured pawn is right behind the en passant square
+        int directionOfCapturedPiece = friendlyColor == Piece.WHITE ? Directions.BOTTOM : Directions.TOP;
+        int squareOfCapturedPiece = enPassantSquare + Directions.OFFSETS[directionOfCapturedPiece];
+        long capturedPiece = Bitboards.squareBit(squareOfCapturedPiece);
 
-        Square squareOfPiece = (Square) board.getComponent(piece.positionIndex);
-        int[] numberSquaresToBorder = squareOfPiece.getNumberOfSquaresToBorder();
+        // Friendly pawns attacking the en passant square stand where an enemy pawn on it would attack
+        long capturingPawns = Bitboards.PAWN_ATTACKS[enemyColor][enPassantSquare] & position.pieceBitboards[friendlyColor][Piece.PAWN];
 
-        int startDirectionIndex;
-        int directionIndexIncrement;
-        switch (typeOfPiece) {
-            // Queen can move all directions
-            default -> {
-                startDirectionIndex = Directions.LEFT;
-                directionIndexIncrement = 1;
-            }
-            // Bishop can only move diagonally
-            case Piece.BISHOP -> {
-                startDirectionIndex = Directions.TOP_LEFT;
-                directionIndexIncrement = 2;
-            }
-            // Rook can only move straight
-            case Piece.ROOK -> {
-                startDirectionIndex = Directions.LEFT;
-                directionIndexIncrement = 2;
-            }
-        }
+        for(; capturingPawns != 0; capturingPawns &= capturingPawns - 1) {
+            int startSquare = Long.numberOfTrailingZeros(capturingPawns);
 
-        for(int directionIndex = startDirectionIndex; directionIndex < 8; directionIndex += directionIndexIncrement) {
-            int index = squareOfPiece.getIndex();
-            for(int i = 0; i < numberSquaresToBorder[directionIndex]; i++) {
-                index += Board.OFFSETS[directionIndex];
-                Square square = (Square) board.getComponent(index);
+            // Both pawns leave their rank at once, which can expose the king in ways the pin detection misses
+            // -> Look for attacks on the king with the board occupied as after the capture
+            long occupancyAfterCapture = (position.occupiedSquares() ^ Bitboards.squareBit(startSquare) ^ capturedPiece)
+                    | Bitboards.squareBit(enPassantSquare);
+            long attackers = position.attackersTo(friendlyKingSquare, occupancyAfterCapture)
+                    & position.colorBitboards[enemyColor] & ~capturedPiece;
 
-                // Square is empty, add to attacked squares
-                if(square.getPiece() == null) {
-                    squares.add(square);
-                }
-                // Square is blocked by friendly piece
-                else if(square.getPiece().getColor() == piece.getColor()) {
-                    // If calculating king danger squares, king cannot capture that piece
-                    // because he would end up in check
-                    if(kingDangerSquares) {
-                        squares.add(square);
-                    }
-                    break;
-                }
-                // Square is blocked by enemy piece
-                else {
-                    squares.add(square);
-                    break;
-                }
-            }
+            // King would be in check, this move is illegal
+            if(attackers != 0) continue;
+            addMove(Move.encode(startSquare, enPassantSquare, MoveFlags.EN_PASSANT));
         }
-        return squares;
     }
 
-    private LinkedList<Square> generatePawnSquares(Piece piece, boolean kingDangerSquares) {
-        LinkedList<Square> squares = new LinkedList<>();
-
-        int directionIndex = piece.getColor() == Piece.WHITE ? Directions.TOP : Directions.BOTTOM;
-        // Since pawns reaching the end of the board get promoted
-        // there is no need to worry about there being enough squares between it and the end
-        int index = piece.positionIndex + Board.OFFSETS[directionIndex];
-        Square square = (Square) board.getComponent(index);
-        // Only add square if standard moves are calculated as this square cannot be attacked by the pawn
-        if(!kingDangerSquares && square.getPiece() == null) {
-            squares.add(square);
-        }
+    private void generateCastleMoves(int kingSquare) {
+        int color = position.colorAtMove;
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        long occupiedSquares = position.occupiedSquares();
 
-        // Pawn only attacks diagonally in the forward direction
-        for(directionIndex = Directions.LEFT; directionIndex <= Directions.RIGHT; directionIndex += 4) {
-            int[] numberSquaresToBorder = square.getNumberOfSquaresToBorder();
-            if(numberSquaresToBorder[directionIndex] <= 0) continue;
-
-            int attackedIndex = index + Board.OFFSETS[directionIndex];
-            Square attackedSquare = (Square) board.getComponent(attackedIndex);
-            if(attackedSquare.getPiece() == null) {
-                // Only add when king danger squares are calculated since pawn can only move diagonally
-                // when capturing a piece
-                if(kingDangerSquares)  {
-                    squares.add(attackedSquare);
-                }
-            } else if(attackedSquare.getPiece().getColor() == piece.getColor()) {
-                // King cannot capture this piece as he would end up in check
-                if(kingDangerSquares) {
-                    squares.add(attackedSquare);
-                }
-            } else {
-                squares.add(attackedSquare);
-            }
-        }
-        return squares;
-    }
+        for(int side = Position.QUEEN_SIDE; side <= Position.KING_SIDE; side++) {
+            if(!position.canCastle(color, side)) continue;
 
-    private LinkedList<Square> generateKnightSquares(Piece piece, boolean kingDangerSquares) {
-        LinkedList<Square> squares = new LinkedList<>();
-
-        Square squareOfPiece = (Square) board.getComponent(piece.positionIndex);
-        int[] numberSquaresToBorder;
-
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM; directionIndex += 2) {
-            numberSquaresToBorder = squareOfPiece.getNumberOfSquaresToBorder();
-            if(numberSquaresToBorder[directionIndex] < 2) continue;
-
-            // Go two steps in this direction
-            int firstStepIndex = piece.positionIndex + (Board.OFFSETS[directionIndex] * 2);
-            Square firstStepSquare = (Square) board.getComponent(firstStepIndex);
-            numberSquaresToBorder = firstStepSquare.getNumberOfSquaresToBorder();
-
-            int startDirectionIndex;
-            int endDirectionIndex;
-            if(directionIndex == Directions.LEFT || directionIndex == Directions.RIGHT) {
-                // Last step was horizontal so this step must be vertical
-                startDirectionIndex = Directions.TOP;
-                endDirectionIndex = Directions.BOTTOM;
-            } else {
-                // Last step was vertical so this step must be horizontal
-                startDirectionIndex = Directions.LEFT;
-                endDirectionIndex = Directions.RIGHT;
-            }
+            int directionIndex = side == Position.QUEEN_SIDE ? Directions.LEFT : Directions.RIGHT;
+            int step = Directions.OFFSETS[directionIndex];
+            int rookSquare = Position.CASTLING_ROOK_SQUARES[color][side];
 
-            for(int secondDirectionIndex = startDirectionIndex; secondDirectionIndex <= endDirectionIndex; secondDirectionIndex += 4) {
-                if(numberSquaresToBorder[secondDirectionIndex] <= 0) continue;
-                int secondStepIndex = firstStepIndex + Board.OFFSETS[secondDirectionIndex];
-                Square secondStepSquare = (Square) board.getComponent(secondStepIndex);
+            // Rook must still be in its corner, castling rights are lost once it moved
+            if((position.pieceBitboards[color][Piece.ROOK] & Bitboards.squareBit(rookSquare)) == 0) continue;
+            // There cannot be any pieces between king and rook
+            if((Bitboards.BETWEEN[kingSquare][rookSquare] & occupiedSquares) != 0) continue;
+            // King cannot move through or end up in check
+            if(position.isSquareAttacked(kingSquare + step, enemyColor, occupiedSquares)
+                    || position.isSquareAttacked(kingSquare + (step * 2), enemyColor, occupiedSquares)) continue;
 
-                if(secondStepSquare.getPiece() == null) {
-                    squares.add(secondStepSquare);
-                }
-                else if(secondStepSquare.getPiece().getColor() == piece.getColor()) {
-                    // King cannot capture this piece as he would end up in check
-                    if(kingDangerSquares) {
-                        squares.add(secondStepSquare);
-                    }
-                }
-                else {
-                    squares.add(secondStepSquare);
-                }
-            }
+            int moveFlag = side == Position.QUEEN_SIDE ? MoveFlags.CASTLE_QUEEN_SIDE : MoveFlags.CASTLE_KING_SIDE;
+            addMove(Move.encode(kingSquare, kingSquare + (step * 2), moveFlag));
         }
-        return squares;
     }
 
-    private LinkedList<Square> generateKingSquares(Piece piece, boolean kingDangerSquares) {
-        LinkedList<Square> squares = new LinkedList<>();
-
-        Square squareOfPiece = (Square) board.getComponent(piece.positionIndex);
-        int[] numberSquaresToBorder = squareOfPiece.getNumberOfSquaresToBorder();
-
-        for(int directionIndex = Directions.LEFT; directionIndex <= Directions.BOTTOM_LEFT; directionIndex++) {
-            if(numberSquaresToBorder[directionIndex] <= 0) continue;
-            int index = piece.positionIndex + Board.OFFSETS[directionIndex];
-            Square square = (Square) board.getComponent(index);
-
-            if(square.getPiece() == null) {
-                squares.add(square);
-            } else if(square.getPiece().getColor() == piece.getColor()) {
-                // King cannot move there as he would end up in check
-                if(kingDangerSquares) {
-                    squares.add(square);
+    // Whether the move is legal in the current position
+    // Meant for moves that were not generated for this position, like moves from the transposition table
+    public boolean isLegal(int move) {
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+        if(move == Move.NONE || moveFlag > MoveFlags.PROMOTE_KNIGHT) return false;
+        int color = position.colorAtMove;
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        int piece = position.squares[startSquare];
+        int capturedPiece = position.squares[targetSquare];
+
+        if(piece == Position.EMPTY || Position.colorOf(piece) != color) return false;
+        if(capturedPiece != Position.EMPTY && Position.colorOf(capturedPiece) == color) return false;
+
+        int type = Position.typeOf(piece);
+        long occupiedSquares = position.occupiedSquares();
+        long target = Bitboards.squareBit(targetSquare);
+        int forward = Directions.OFFSETS[color == Piece.WHITE ? Directions.TOP : Directions.BOTTOM];
+
+        boolean possible = switch(moveFlag) {
+            case MoveFlags.EN_PASSANT -> type == Piece.PAWN && targetSquare == position.enPassantSquare
+                    && (Bitboards.PAWN_ATTACKS[color][startSquare] & target) != 0;
+            case MoveFlags.DOUBLE_PAWN_PUSH -> type == Piece.PAWN && startSquare / 8 == (color == Piece.WHITE ? 6 : 1)
+                    && targetSquare == startSquare + (2 * forward)
+                    && (occupiedSquares & (target | Bitboards.squareBit(startSquare + forward))) == 0;
+            case MoveFlags.CASTLE_KING_SIDE, MoveFlags.CASTLE_QUEEN_SIDE -> type == Piece.KING && isCastlePossible(move);
+            default -> {
+                if(type != Piece.PAWN) {
+                    yield moveFlag == MoveFlags.NONE && (attacks(type, startSquare, occupiedSquares) & target) != 0;
                 }
-            } else {
-                squares.add(square);
+                // Pawns have to promote when reaching the last rank and only then
+                boolean lastRank = targetSquare / 8 == (color == Piece.WHITE ? 0 : 7);
+                if(MoveFlags.isPromotion(moveFlag) != lastRank) yield false;
+                if(targetSquare == startSquare + forward) yield capturedPiece == Position.EMPTY;
+                yield capturedPiece != Position.EMPTY && (Bitboards.PAWN_ATTACKS[color][startSquare] & target) != 0;
             }
-        }
-        return squares;
+        };
+        if(!possible) return false;
+
+        // The move must not leave the own king attacked
+        position.makeMove(move);
+        int kingSquare = Long.numberOfTrailingZeros(position.pieceBitboards[color][Piece.KING]);
+        boolean kingAttacked = position.isSquareAttacked(kingSquare, enemyColor);
+        position.unmakeMove();
+        return !kingAttacked;
     }
 
-    void splitPieces() {
-        whitePieces.clear();
-        darkPieces.clear();
-        for(Piece piece : board.pieces) {
-            if(piece.getColor() == Piece.WHITE) {
-                whitePieces.add(piece);
-            } else {
-                darkPieces.add(piece);
-            }
-        }
+    private boolean isCastlePossible(int move) {
+        int color = position.colorAtMove;
+        int kingSquare = Move.startSquareOf(move);
+        int side = Move.moveFlagOf(move) == MoveFlags.CASTLE_KING_SIDE ? Position.KING_SIDE : Position.QUEEN_SIDE;
+        int directionIndex = side == Position.QUEEN_SIDE ? Directions.LEFT : Directions.RIGHT;
+        int step = Directions.OFFSETS[directionIndex];
+        if(!position.canCastle(color, side) || Move.targetSquareOf(move) != kingSquare + (step * 2)) return false;
+
+        int rookSquare = Position.CASTLING_ROOK_SQUARES[color][side];
+        long occupiedSquares = position.occupiedSquares();
+        if((position.pieceBitboards[color][Piece.ROOK] & Bitboards.squareBit(rookSquare)) == 0) return false;
+        if((Bitboards.BETWEEN[kingSquare][rookSquare] & occupiedSquares) != 0) return false;
+
+        // King cannot castle out of or through check, the target square is checked like for every move
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        return !position.isSquareAttacked(kingSquare, enemyColor, occupiedSquares)
+                && !position.isSquareAttacked(kingSquare + step, enemyColor, occupiedSquares);
     }
 
-    public void handleMove(Piece pieceMoved, Move moveDone) {
-        board.colorAtMove = board.colorAtMove == Piece.DARK ? Piece.WHITE : Piece.DARK;
-
-        // Handle special pieces
-        pieceMoved.doubleMovePossible = false;
-
-        // Handle special moves
-        if(moveDone == null) return;
-        int rookSquareIndex;
-        int newRookSquareIndex;
-
-        switch (moveDone.moveFlag()) {
-            case MoveFlags.DOUBLE_PAWN_PUSH -> board.enPassantMoves = generateEnPassantMoves(moveDone.targetSquare());
-            case MoveFlags.EN_PASSANT -> {
-                // Handle the en passant move
-                // Find the square of the captured piece
-                int directionOfCapturedPiece = pieceMoved.getColor() == Piece.DARK ? Directions.TOP : Directions.BOTTOM;
-                int indexOfCaptureSquare = pieceMoved.positionIndex + Board.OFFSETS[directionOfCapturedPiece];
-                Square captureSquare = (Square) board.getComponent(indexOfCaptureSquare);
-                board.pieces.remove(captureSquare.getPiece());
-                captureSquare.removePiece();
-            }
-            // No checks necessary since the move is only added when possible
-            case MoveFlags.CASTLE_KING_SIDE -> {
-                // Move the king side rook next to the other side of the king to complete the castle
-                rookSquareIndex = moveDone.targetSquare().getIndex() + Board.OFFSETS[Directions.RIGHT];
-                newRookSquareIndex = moveDone.targetSquare().getIndex() + Board.OFFSETS[Directions.LEFT];
-                completeCastleMove(rookSquareIndex, newRookSquareIndex);
-            }
-            case MoveFlags.CASTLE_QUEEN_SIDE -> {
-                // Move the queen side rook next to the other side of the king to complete the castle
-                rookSquareIndex = moveDone.targetSquare().getIndex() + (Board.OFFSETS[Directions.LEFT] * 2);
-                newRookSquareIndex = moveDone.targetSquare().getIndex() + Board.OFFSETS[Directions.RIGHT];
-                completeCastleMove(rookSquareIndex, newRookSquareIndex);
-            }
-            case MoveFlags.PROMOTE_PLAYER -> {
-                Object returnValue = board.createTransformDialog(pieceMoved.getColor());
-                int type;
-                if(returnValue == null) {
-                    type = Piece.QUEEN;
-                } else {
-                    type = (int) board.createTransformDialog(pieceMoved.getColor());
-                }
-                pieceMoved.transformInto(type);
-            }
-            // AI Promotion moves are handled here since there is four types of promotion moves
-            default -> completePromotionMove(moveDone);
-        }
-
-        board.legalMoves = board.moveGenerator.generateLegalMoves();
-        System.out.println(board.colorAtMove);
+    private static long attacks(int type, int square, long occupancy) {
+        return switch(type) {
+            case Piece.KING -> Bitboards.KING_ATTACKS[square];
+            case Piece.KNIGHT -> Bitboards.KNIGHT_ATTACKS[square];
+            case Piece.BISHOP -> Bitboards.bishopAttacks(square, occupancy);
+            case Piece.ROOK -> Bitboards.rookAttacks(square, occupancy);
+            case Piece.QUEEN -> Bitboards.queenAttacks(square, occupancy);
+            default -> 0L;
+        };
     }
 
-    private void completeCastleMove(int rookSquareIndex, int newRookSquareIndex) {
-        Square rookSquare = (Square) board.getComponent(rookSquareIndex);
-        Square newRookSquare = (Square) board.getComponent(newRookSquareIndex);
-        Piece rook = rookSquare.getPiece();
-        rookSquare.removePiece();
-        newRookSquare.addPiece(rook);
-        rook.positionIndex = newRookSquare.getIndex();
+    private void addMoves(int startSquare, long targetSquares) {
+        for(; targetSquares != 0; targetSquares &= targetSquares - 1) {
+            addMove(Move.encode(startSquare, Long.numberOfTrailingZeros(targetSquares), MoveFlags.NONE));
+        }
     }
 
-    private void completePromotionMove(Move move) {
-        int moveFlag = move.moveFlag();
-
-        switch (moveFlag) {
-            case MoveFlags.PROMOTE_QUEEN -> move.targetSquare().getPiece().transformInto(Piece.QUEEN);
-            case MoveFlags.PROMOTE_BISHOP -> move.targetSquare().getPiece().transformInto(Piece.BISHOP);
-            case MoveFlags.PROMOTE_ROOK -> move.targetSquare().getPiece().transformInto(Piece.ROOK);
-            case MoveFlags.PROMOTE_KNIGHT -> move.targetSquare().getPiece().transformInto(Piece.KNIGHT);
-        }
+    private void addMove(int move) {
+        moves[numberOfMoves++] = move;
     }
 }
@@ -0,0 +1,13 @@
+package com.juliuswendland.chessai;
+
+// Move buffers allocated once for every ply of a search
+// Generating moves into them does not create any objects
+public class MoveLists {
+    public static final int MAX_PLY = 128;
+
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+
+    public int[] atPly(int ply) {
+        return moves[ply];
+    }
+}
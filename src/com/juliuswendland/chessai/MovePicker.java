@@ -0,0 +1,226 @@
+package com.juliuswendland.chessai;
+
+// Hands out the legal moves of a position one at a time, most promising first:
+// the hash move, captures and promotions by most valuable victim and least valuable attacker,
+// two killer moves, the remaining quiet moves by history and finally the captures that lose material.
+// Every stage is only generated once the moves before it did not cause a cutoff,
+// so many nodes never generate their quiet moves at all.
+public class MovePicker {
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_NOISY = 1;
+    private static final int NOISY = 2;
+    private static final int FIRST_KILLER = 3;
+    private static final int SECOND_KILLER = 4;
+    private static final int GENERATE_QUIET = 5;
+    private static final int QUIET = 6;
+    private static final int BAD_NOISY = 7;
+    // Hands out the moves in the order they were given, used at the root
+    private static final int GIVEN_ORDER = 8;
+    private static final int DONE = 9;
+
+    private final Position position;
+    private final MoveGenerator moveGenerator;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private int numberOfMoves;
+    private int index;
+    private int stage;
+    // Captures the static exchange evaluation expects to lose material, searched after the quiet moves
+    private final int[] badNoisyMoves = new int[MoveGenerator.MAX_MOVES];
+    private int numberOfBadNoisyMoves;
+    private final StaticExchange staticExchange = new StaticExchange();
+    // The quiescence search only gets the captures and promotions that do not lose material
+    private boolean noisyOnly;
+    // Whether moves are generated pseudo-legal and checked for legality only when handed out
+    private boolean pseudoLegalGeneration;
+
+    private int hashMove;
+    private int firstKiller;
+    private int secondKiller;
+    // Butterfly history of the color at move, indexed by the start and target square of a move
+    private int[] history;
+
+    public MovePicker(Position position, MoveGenerator moveGenerator) {
+        this.position = position;
+        this.moveGenerator = moveGenerator;
+    }
+
+    public void setPseudoLegalGeneration(boolean pseudoLegalGeneration) {
+        this.pseudoLegalGeneration = pseudoLegalGeneration;
+    }
+
+    public void init(int hashMove, int firstKiller, int secondKiller, int[] history) {
+        this.hashMove = hashMove;
+        this.firstKiller = firstKiller;
+        this.secondKiller = secondKiller;
+        this.history = history;
+        noisyOnly = false;
+        stage = HASH_MOVE;
+    }
+
+    // Only hands out captures and promotions and leaves out those losing material
+    public void initQuiescence() {
+        hashMove = Move.NONE;
+        noisyOnly = true;
+        stage = GENERATE_NOISY;
+    }
+
+    // Generates all moves at once, the caller can reorder them before they are handed out
+    // Returns the number of moves
+    public int initWithAllMoves() {
+        numberOfMoves = moveGenerator.generateLegalMoves(moves);
+        index = 0;
+        stage = GIVEN_ORDER;
+        return numberOfMoves;
+    }
+
+    public int[] getMoves() {
+        return moves;
+    }
+
+    // Next move to search or Move.NONE if all moves were handed out
+    @SuppressWarnings("fallthrough")
+    public int next() {
+        // Every stage falls through into the next one once it has no moves left
+        switch(stage) {
+            case HASH_MOVE:
+                stage = GENERATE_NOISY;
+                if(moveGenerator.isLegal(hashMove)) return hashMove;
+                // fall through
+            case GENERATE_NOISY:
+                numberOfMoves = generateMoves(MoveGenerator.NOISY_MOVES);
+                index = 0;
+                numberOfBadNoisyMoves = 0;
+                scoreNoisyMoves();
+                stage = NOISY;
+                // fall through
+            case NOISY:
+                while(index < numberOfMoves) {
+                    int move = pickBest();
+                    if(move == hashMove || !isLegal(move)) continue;
+                    if(!isLosingCapture(move)) return move;
+                    if(!noisyOnly) badNoisyMoves[numberOfBadNoisyMoves++] = move;
+                }
+                if(noisyOnly) {
+                    stage = DONE;
+                    return Move.NONE;
+                }
+                stage = FIRST_KILLER;
+                // fall through
+            case FIRST_KILLER:
+                stage = SECOND_KILLER;
+                if(isUsableKiller(firstKiller)) return firstKiller;
+                // fall through
+            case SECOND_KILLER:
+                stage = GENERATE_QUIET;
+                if(secondKiller != firstKiller && isUsableKiller(secondKiller)) return secondKiller;
+                // fall through
+            case GENERATE_QUIET:
+                numberOfMoves = generateMoves(MoveGenerator.QUIET_MOVES);
+                index = 0;
+                for(int i = 0; i < numberOfMoves; i++) {
+                    scores[i] = history[historyIndex(moves[i])];
+                }
+                stage = QUIET;
+                // fall through
+            case QUIET:
+                while(index < numberOfMoves) {
+                    int move = pickBest();
+                    if(move != hashMove && move != firstKiller && move != secondKiller && isLegal(move)) return move;
+                }
+                index = 0;
+                stage = BAD_NOISY;
+                // fall through
+            case BAD_NOISY:
+                // Already in the order of their MVV-LVA scores
+                if(index < numberOfBadNoisyMoves) return badNoisyMoves[index++];
+                stage = DONE;
+                return Move.NONE;
+            case GIVEN_ORDER:
+                if(index < numberOfMoves) return moves[index++];
+                stage = DONE;
+                return Move.NONE;
+            default:
+                return Move.NONE;
+        }
+    }
+
+    public static int historyIndex(int move) {
+        // Start and target square take the lowest 12 bits of a move
+        return move & 0xFFF;
+    }
+
+    // Whether the move does not capture or promote, given it is played in the position
+    public static boolean isQuiet(Position position, int move) {
+        int moveFlag = Move.moveFlagOf(move);
+        return position.squares[Move.targetSquareOf(move)] == Position.EMPTY
+                && moveFlag != MoveFlags.EN_PASSANT && !MoveFlags.isPromotion(moveFlag);
+    }
+
+    private int generateMoves(int kinds) {
+        if(pseudoLegalGeneration) return moveGenerator.generatePseudoLegalMoves(moves, kinds);
+        return moveGenerator.generateLegalMoves(moves, kinds);
+    }
+
+    // Moves of the generator are checked once they are handed out, so moves after a cutoff are never checked
+    private boolean isLegal(int move) {
+        return !pseudoLegalGeneration || moveGenerator.isPseudoLegalMoveLegal(move);
+    }
+
+    private boolean isUsableKiller(int killer) {
+        // Killers are quiet moves, the same move can be a capture here and is then searched with those
+        return killer != hashMove && killer != Move.NONE && isQuiet(position, killer) && moveGenerator.isLegal(killer);
+    }
+
+    // Capturing a piece worth at least as much as the capturing piece can never lose material,
+    // only the other captures need the more expensive static exchange evaluation
+    // The king has no value here, which is right as its legal captures are always safe
+    private boolean isLosingCapture(int move) {
+        int moveFlag = Move.moveFlagOf(move);
+        if(MoveFlags.isPromotion(moveFlag) || moveFlag == MoveFlags.EN_PASSANT) return false;
+
+        int attacker = Position.typeOf(position.squares[Move.startSquareOf(move)]);
+        int victim = Position.typeOf(position.squares[Move.targetSquareOf(move)]);
+        if(Evaluation.PIECE_VALUES[victim] >= Evaluation.PIECE_VALUES[attacker]) return false;
+        return staticExchange.evaluate(position, move) < 0;
+    }
+
+    private void scoreNoisyMoves() {
+        for(int i = 0; i < numberOfMoves; i++) {
+            int move = moves[i];
+            int moveFlag = Move.moveFlagOf(move);
+            int attacker = Position.typeOf(position.squares[Move.startSquareOf(move)]);
+            int victim = position.squares[Move.targetSquareOf(move)];
+            int victimValue;
+            if(moveFlag == MoveFlags.EN_PASSANT) {
+                victimValue = Evaluation.PIECE_VALUES[Piece.PAWN];
+            } else {
+                // Promotions without a capture have no victim
+                victimValue = victim == Position.EMPTY ? 0 : Evaluation.PIECE_VALUES[Position.typeOf(victim)];
+            }
+
+            // Most valuable victim first, among equal victims the least valuable attacker
+            // The king has no value, which is right as its captures are always safe
+            int score = (victimValue * 16) - (Evaluation.PIECE_VALUES[attacker] / 10);
+            if(MoveFlags.isPromotion(moveFlag)) {
+                score += Evaluation.PIECE_VALUES[MoveFlags.promotionType(moveFlag)] * 16;
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Swaps the best scored of the remaining moves to the current index and hands it out
+    private int pickBest() {
+        int best = index;
+        for(int i = index + 1; i < numberOfMoves; i++) {
+            if(scores[i] > scores[best]) best = i;
+        }
+
+        int move = moves[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        index++;
+        return move;
+    }
+}
@@ -0,0 +1,165 @@
+package com.juliuswendland.chessai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Lazy SMP: all threads search the same root position and only share the transposition table
+// The main thread decides when to stop, its result is the result of the whole search
+public class ParallelSearch {
+    private final TranspositionTable transpositionTable;
+    private final SearchOptions options = new SearchOptions();
+    private final List<Search> searches = new ArrayList<>();
+    private ExecutorService helperThreads;
+    private Consumer<SearchResult> iterationListener;
+    private volatile long startTime;
+    // Limits of the running search, set after the start time
+    private volatile SearchLimits runningLimits;
+
+    public ParallelSearch(int numberOfThreads, TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+        setThreads(numberOfThreads);
+    }
+
+    public static int defaultNumberOfThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Must not be called while a search is running
+    public void setThreads(int numberOfThreads) {
+        numberOfThreads = Math.max(1, numberOfThreads);
+        if(helperThreads != null) {
+            helperThreads.shutdownNow();
+        }
+
+        searches.clear();
+        for(int i = 0; i < numberOfThreads; i++) {
+            // Every thread gets its own copy of the position to make moves on
+            Search search = new Search(new Position(Main.START_POSITION), transpositionTable);
+            search.setThreadIndex(i);
+            search.setOptions(options);
+            searches.add(search);
+        }
+
+        helperThreads = null;
+        if(numberOfThreads > 1) {
+            helperThreads = Executors.newFixedThreadPool(numberOfThreads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "Search helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // The listener is informed on the searching thread about every iteration the main thread completes,
+    // with the nodes of all threads
+    public void setIterationListener(Consumer<SearchResult> iterationListener) {
+        this.iterationListener = iterationListener;
+    }
+
+    // Permille of the pawn hash table probes of all threads in the last search that found their entry
+    public int pawnHashHitRate() {
+        long probes = 0;
+        long hits = 0;
+        for(Search search : searches) {
+            probes += search.getPawnHashTable().getProbes();
+            hits += search.getPawnHashTable().getHits();
+        }
+        return probes == 0 ? 0 : (int) (hits * 1000 / probes);
+    }
+
+    public int getThreads() {
+        return searches.size();
+    }
+
+    // Shared by all threads, must not be changed while a search is running
+    public SearchOptions getOptions() {
+        return options;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // Searches the position on the calling thread and on all helper threads
+    // The given position itself is not changed
+    public SearchResult search(Position position, SearchLimits limits) {
+        startTime = System.nanoTime();
+        runningLimits = limits;
+        for(Search search : searches) {
+            search.getPosition().copyFrom(position);
+        }
+
+        Search mainSearch = searches.get(0);
+        mainSearch.setIterationListener(iterationListener == null ? null
+                : iteration -> iterationListener.accept(combinedResult(iteration)));
+        List<Future<?>> helpers = new ArrayList<>();
+        for(int i = 1; i < searches.size(); i++) {
+            Search helper = searches.get(i);
+            helper.prepare();
+            // Helpers run until the main thread is done
+            helpers.add(helperThreads.submit(() -> helper.search(SearchLimits.depth(limits.depth))));
+        }
+
+        SearchResult result = mainSearch.search(limits);
+        runningLimits = null;
+
+        for(int i = 1; i < searches.size(); i++) {
+            searches.get(i).stop();
+        }
+        for(Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+
+        return combinedResult(result);
+    }
+
+    // Reports the work of all threads together, including iterations that were aborted
+    private SearchResult combinedResult(SearchResult result) {
+        long nodes = 0;
+        for(Search search : searches) {
+            nodes += search.getNodes();
+        }
+        long timeMillis = (System.nanoTime() - startTime) / 1_000_000;
+        return new SearchResult(result.bestMove(), result.score(), result.depth(), nodes, timeMillis,
+                result.principalVariation());
+    }
+
+    // Turns a search without time limits, started to ponder while the opponent thinks, into a normal one
+    // once the expected move was played: the time limits are counted from now on
+    // Takes the limits the search was started with, so a search that is about to start is caught as well,
+    // its time limits then count from its start
+    // Can be called from any thread
+    public void ponderHit(SearchLimits ponderLimits, SearchLimits timeLimits) {
+        long elapsedMillis = ponderLimits == runningLimits ? (System.nanoTime() - startTime) / 1_000_000 : 0;
+        ponderLimits.hardTimeMillis = afterElapsed(elapsedMillis, timeLimits.hardTimeMillis);
+        ponderLimits.softTimeMillis = afterElapsed(elapsedMillis, timeLimits.softTimeMillis);
+    }
+
+    private static long afterElapsed(long elapsedMillis, long millis) {
+        return millis == Long.MAX_VALUE ? Long.MAX_VALUE : elapsedMillis + millis;
+    }
+
+    // Must be called before the search is handed to another thread, after that stop() ends it
+    // even if it arrives before the search started
+    public void prepare() {
+        searches.get(0).prepare();
+    }
+
+    // Ends the running search as soon as possible, can be called from any thread
+    public void stop() {
+        for(Search search : searches) {
+            search.stop();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.juliuswendland.chessai;
+
+// Cache of pawn structure scores by the pawn key of a position
+// Every search thread has its own table, so it needs no synchronization
+public class PawnHashTable {
+    public static final int DEFAULT_ENTRIES = 1 << 16;
+
+    private final long[] keys;
+    // Packed middlegame and endgame scores, see Evaluation.packScore()
+    private final int[] scores;
+    private final int indexMask;
+
+    private long probes;
+    private long hits;
+
+    // The number of entries is rounded down to a power of two
+    public PawnHashTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(1, entries));
+        keys = new long[size];
+        scores = new int[size];
+        indexMask = size - 1;
+    }
+
+    // Packed pawn structure score of the position, calculated only if it is not stored yet
+    public int pawnStructure(Position position) {
+        long key = position.pawnKey;
+        int index = (int) key & indexMask;
+        probes++;
+        // Empty entries have key 0 and score 0, which is also the right score for a position without pawns
+        if(keys[index] == key) {
+            hits++;
+            return scores[index];
+        }
+
+        int score = Evaluation.pawnStructure(position);
+        keys[index] = key;
+        scores[index] = score;
+        return score;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    // Permille of the probes that found their entry
+    public int hitRate() {
+        return probes == 0 ? 0 : (int) (hits * 1000 / probes);
+    }
+
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+}
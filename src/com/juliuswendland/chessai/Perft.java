@@ -0,0 +1,186 @@
+package com.juliuswendland.chessai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts the leaf nodes of the move tree up to a fixed depth to validate and benchmark the move generator
+//
+// Usage: Perft perft|divide <depth> [fen] [--threads <n>] [--hash <megabytes>] [--pseudo-legal]
+// divide prints the number of nodes below every legal move, which helps to find the move a bug is hidden in
+// --pseudo-legal counts with the pseudo-legal generation and its lazy legality check instead,
+// both have to arrive at the same numbers
+public class Perft {
+    private final Position position;
+    private final MoveGenerator moveGenerator;
+    private final MoveLists moveLists = new MoveLists();
+    // Optional, null if node counts should not be cached
+    private final PerftHashTable hashTable;
+    private final boolean pseudoLegal;
+
+    public Perft(Position position, PerftHashTable hashTable) {
+        this(position, hashTable, false);
+    }
+
+    public Perft(Position position, PerftHashTable hashTable, boolean pseudoLegal) {
+        this.position = position;
+        this.moveGenerator = new MoveGenerator(position);
+        this.hashTable = hashTable;
+        this.pseudoLegal = pseudoLegal;
+    }
+
+    public record Division(int move, long nodes) {}
+
+    public long perft(int depth) {
+        if(depth <= 0) return 1;
+        return count(depth, 0);
+    }
+
+    private long count(int depth, int ply) {
+        if(hashTable != null && depth > 1) {
+            long storedNodes = hashTable.probe(position.zobristKey, depth);
+            if(storedNodes >= 0) return storedNodes;
+        }
+
+        int[] moves = moveLists.atPly(ply);
+        int numberOfMoves = generateMoves(moves);
+        // Every legal move leads to exactly one leaf, so there is no need to make them
+        if(depth == 1) return numberOfMoves;
+
+        long nodes = 0;
+        for(int i = 0; i < numberOfMoves; i++) {
+            position.makeMove(moves[i]);
+            nodes += count(depth - 1, ply + 1);
+            position.unmakeMove();
+        }
+
+        if(hashTable != null) {
+            hashTable.store(position.zobristKey, depth, nodes);
+        }
+        return nodes;
+    }
+
+    private int generateMoves(int[] moves) {
+        if(!pseudoLegal) return moveGenerator.generateLegalMoves(moves);
+
+        // The generator is shared by all plies, so the moves are checked before the next ply generates
+        int numberOfMoves = moveGenerator.generatePseudoLegalMoves(moves, MoveGenerator.ALL_MOVES);
+        int numberOfLegalMoves = 0;
+        for(int i = 0; i < numberOfMoves; i++) {
+            if(moveGenerator.isPseudoLegalMoveLegal(moves[i])) moves[numberOfLegalMoves++] = moves[i];
+        }
+        return numberOfLegalMoves;
+    }
+
+    // Number of nodes below every legal move of the position, searched on the calling thread
+    public List<Division> divide(int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int numberOfMoves = generateMoves(moves);
+
+        List<Division> divisions = new ArrayList<>();
+        for(int i = 0; i < numberOfMoves; i++) {
+            position.makeMove(moves[i]);
+            divisions.add(new Division(moves[i], perft(depth - 1)));
+            position.unmakeMove();
+        }
+        return divisions;
+    }
+
+    // Same as divide(), but every root move is counted by its own task on the pool
+    public static List<Division> parallelDivide(Position position, int depth, PerftHashTable hashTable,
+                                                boolean pseudoLegal, ForkJoinPool pool) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int numberOfMoves = new Perft(position, null, pseudoLegal).generateMoves(moves);
+
+        List<RootMoveTask> tasks = new ArrayList<>();
+        for(int i = 0; i < numberOfMoves; i++) {
+            tasks.add(new RootMoveTask(position, moves[i], depth - 1, hashTable, pseudoLegal));
+        }
+
+        return pool.submit(() -> {
+            RootMoveTask.invokeAll(tasks);
+            List<Division> divisions = new ArrayList<>();
+            for(RootMoveTask task : tasks) {
+                divisions.add(new Division(task.move, task.join()));
+            }
+            return divisions;
+        }).join();
+    }
+
+    // Tasks are never serialized, the fork/join pool only runs them in this process
+    @SuppressWarnings("serial")
+    private static class RootMoveTask extends RecursiveTask<Long> {
+        private final Position position;
+        private final int move;
+        private final int depth;
+        private final PerftHashTable hashTable;
+        private final boolean pseudoLegal;
+
+        RootMoveTask(Position rootPosition, int move, int depth, PerftHashTable hashTable, boolean pseudoLegal) {
+            // Every task works on its own copy, the positions are not thread safe
+            this.position = new Position(rootPosition);
+            this.move = move;
+            this.depth = depth;
+            this.hashTable = hashTable;
+            this.pseudoLegal = pseudoLegal;
+        }
+
+        @Override
+        protected Long compute() {
+            position.makeMove(move);
+            return new Perft(position, hashTable, pseudoLegal).perft(depth);
+        }
+    }
+
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.out.println("Usage: Perft perft|divide <depth> [fen] [--threads <n>] [--hash <megabytes>] [--pseudo-legal]");
+            return;
+        }
+
+        boolean divide = args[0].equals("divide");
+        int depth = Integer.parseInt(args[1]);
+        String fen = Main.START_POSITION;
+        int threads = 1;
+        int hashMegabytes = 0;
+        boolean pseudoLegal = false;
+
+        for(int i = 2; i < args.length; i++) {
+            switch(args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--hash" -> hashMegabytes = Integer.parseInt(args[++i]);
+                case "--pseudo-legal" -> pseudoLegal = true;
+                default -> fen = args[i];
+            }
+        }
+
+        Position position = new Position(fen);
+        PerftHashTable hashTable = hashMegabytes > 0 ? new PerftHashTable(hashMegabytes) : null;
+
+        long startTime = System.nanoTime();
+        long nodes = 0;
+        if(depth <= 1 && !divide) {
+            nodes = new Perft(position, hashTable, pseudoLegal).perft(depth);
+        } else {
+            List<Division> divisions;
+            if(threads > 1) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                divisions = parallelDivide(position, Math.max(1, depth), hashTable, pseudoLegal, pool);
+                pool.shutdown();
+            } else {
+                divisions = new Perft(position, hashTable, pseudoLegal).divide(Math.max(1, depth));
+            }
+
+            for(Division division : divisions) {
+                if(divide) System.out.println(Move.toUci(division.move()) + ": " + division.nodes());
+                nodes += division.nodes();
+            }
+        }
+        long timeMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Time: " + timeMillis + " ms");
+        System.out.println("Nodes per second: " + (nodes * 1000 / Math.max(1, timeMillis)));
+    }
+}
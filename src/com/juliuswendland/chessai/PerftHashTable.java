@@ -0,0 +1,46 @@
+package com.juliuswendland.chessai;
+
+// Cache of perft node counts by Zobrist key and depth, shared by all perft threads without locking
+// Uses the same layout as the transposition table: the key is stored XOR the data, so torn entries are misses
+public class PerftHashTable {
+    private static final int LONGS_PER_ENTRY = 2;
+
+    private final long[] table;
+    private final long numberOfEntries;
+
+    public PerftHashTable(int megabytes) {
+        megabytes = Math.max(TranspositionTable.MIN_SIZE_MB, Math.min(TranspositionTable.MAX_SIZE_MB, megabytes));
+        long numberOfLongs = (long) megabytes * 1024 * 1024 / Long.BYTES;
+        numberOfEntries = numberOfLongs / LONGS_PER_ENTRY;
+        table = new long[(int) (numberOfEntries * LONGS_PER_ENTRY)];
+    }
+
+    // Returns the number of nodes stored for the key and depth or -1 if there is no entry
+    public long probe(long key, int depth) {
+        int index = entryIndex(key);
+        long data = table[index + 1];
+        if((table[index] ^ data) != key || data == 0 || depthOf(data) != depth) return -1;
+        return data >>> 8;
+    }
+
+    public void store(long key, int depth, long nodes) {
+        int index = entryIndex(key);
+        // Deeper counts save more work, so they are kept
+        long storedData = table[index + 1];
+        if(storedData != 0 && depthOf(storedData) > depth) return;
+
+        // Depth in the lowest 8 bits, node count in the others
+        long data = (nodes << 8) | depth;
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    private int entryIndex(long key) {
+        long entry = ((key >>> 32) * numberOfEntries) >>> 32;
+        return (int) (entry * LONGS_PER_ENTRY);
+    }
+
+    private static int depthOf(long data) {
+        return (int) (data & 0xFF);
+    }
+}
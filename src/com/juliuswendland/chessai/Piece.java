@@ -4,10 +4,8 @@ import javax.swing.*;
 
 public class Piece extends JLabel {
     public int positionIndex;
-    private int type;
+    private final int type;
     private final int color;
-    public boolean doubleMovePossible;
-    public boolean hasMovesPreviously = false;
     public static final int KING = 0, QUEEN = 1, BISHOP = 2, KNIGHT = 3, ROOK = 4, PAWN = 5;
     public static final int WHITE = 1, DARK = 0;
 
@@ -22,17 +20,6 @@ public class Piece extends JLabel {
         setVerticalAlignment(0);
         repaint();
         revalidate();
-
-        doubleMovePossible = type == 5;
-    }
-
-    public void transformInto(int type) {
-        this.type = type;
-        setIcon(Resources.ICONS[color][type]);
-    }
-
-    public boolean isSlidingPiece() {
-        return type == Piece.QUEEN || type == Piece.BISHOP || type == Piece.ROOK;
     }
 
     // Getters and setters
@@ -0,0 +1,413 @@
+package com.juliuswendland.chessai;
+
+import java.util.Arrays;
+
+// Headless representation of a chess position
+// Does not depend on any Swing component, so it can be used for search without a GUI
+public class Position {
+    public static final int EMPTY = -1;
+    public static final int QUEEN_SIDE = 0, KING_SIDE = 1;
+    public static final int ALL_CASTLING_RIGHTS = 0b1111;
+    // Maximum number of moves that can be made on a position without taking any back
+    public static final int MAX_PLIES = 2048;
+
+    // Squares the kings and rooks have to start on to castle, indexed by color (and side for the rooks)
+    public static final int[] CASTLING_KING_SQUARES = {4, 60};
+    public static final int[][] CASTLING_ROOK_SQUARES = {{0, 7}, {56, 63}};
+
+    // Castling rights that are kept when a piece moves from or to a square
+    // Moving the king or a rook (or capturing a rook) removes the corresponding rights
+    private static final int[] CASTLING_RIGHTS_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_MASK, ALL_CASTLING_RIGHTS);
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            CASTLING_RIGHTS_MASK[CASTLING_KING_SQUARES[color]] &= ~castlingRightsOf(color);
+            for(int side = QUEEN_SIDE; side <= KING_SIDE; side++) {
+                CASTLING_RIGHTS_MASK[CASTLING_ROOK_SQUARES[color][side]] &= ~castlingBit(color, side);
+            }
+        }
+    }
+
+    // Every square holds either EMPTY or a piece created by makePiece()
+    public final int[] squares = new int[64];
+    // The same pieces as bitboards, one for every color and type and one for all pieces of a color
+    public final long[][] pieceBitboards = new long[2][6];
+    public final long[] colorBitboards = new long[2];
+    public int colorAtMove = Piece.WHITE;
+    public int castlingRights = ALL_CASTLING_RIGHTS;
+    // Square a pawn can move to when capturing en passant, -1 if there is none
+    public int enPassantSquare = -1;
+    // Number of moves since the last capture or pawn move
+    public int halfmoveClock = 0;
+    // Starts at 1 and is incremented after every move of dark
+    public int fullmoveNumber = 1;
+    // Hash of the position, updated with every change made to it
+    public long zobristKey;
+    // Hash of only the pawns, used to cache the evaluation of the pawn structure
+    public long pawnKey;
+    // Sums of the piece values from the perspective of white and the game phase, see Evaluation
+    // Updated with every change made to the position, like the key
+    public int midgameScore;
+    public int endgameScore;
+    public int phase;
+
+    // Undo stack holding everything unmakeMove() cannot restore from the move itself
+    public int plyCount = 0;
+    private final int[] movesPlayed = new int[MAX_PLIES];
+    private final int[] capturedPieces = new int[MAX_PLIES];
+    private final int[] previousCastlingRights = new int[MAX_PLIES];
+    private final int[] previousEnPassantSquares = new int[MAX_PLIES];
+    private final int[] previousHalfmoveClocks = new int[MAX_PLIES];
+    // Keys of the positions before every move, also used to find repetitions
+    private final long[] previousZobristKeys = new long[MAX_PLIES];
+
+    public Position(String fen) {
+        Fen.read(this, fen);
+    }
+
+    public Position(Position position) {
+        copyFrom(position);
+    }
+
+    // Makes this position equal to the given one, including the moves that can be taken back
+    public void copyFrom(Position position) {
+        System.arraycopy(position.squares, 0, squares, 0, 64);
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            System.arraycopy(position.pieceBitboards[color], 0, pieceBitboards[color], 0, 6);
+        }
+        System.arraycopy(position.colorBitboards, 0, colorBitboards, 0, 2);
+        colorAtMove = position.colorAtMove;
+        castlingRights = position.castlingRights;
+        enPassantSquare = position.enPassantSquare;
+        halfmoveClock = position.halfmoveClock;
+        fullmoveNumber = position.fullmoveNumber;
+        zobristKey = position.zobristKey;
+        pawnKey = position.pawnKey;
+        midgameScore = position.midgameScore;
+        endgameScore = position.endgameScore;
+        phase = position.phase;
+
+        plyCount = position.plyCount;
+        System.arraycopy(position.movesPlayed, 0, movesPlayed, 0, plyCount);
+        System.arraycopy(position.capturedPieces, 0, capturedPieces, 0, plyCount);
+        System.arraycopy(position.previousCastlingRights, 0, previousCastlingRights, 0, plyCount);
+        System.arraycopy(position.previousEnPassantSquares, 0, previousEnPassantSquares, 0, plyCount);
+        System.arraycopy(position.previousHalfmoveClocks, 0, previousHalfmoveClocks, 0, plyCount);
+        System.arraycopy(position.previousZobristKeys, 0, previousZobristKeys, 0, plyCount);
+    }
+
+    // Removes all pieces and resets the state to an empty board with white at move
+    public void clear() {
+        Arrays.fill(squares, EMPTY);
+        for(long[] bitboards : pieceBitboards) {
+            Arrays.fill(bitboards, 0L);
+        }
+        Arrays.fill(colorBitboards, 0L);
+        colorAtMove = Piece.WHITE;
+        castlingRights = 0;
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        zobristKey = 0L;
+        pawnKey = 0L;
+        midgameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        plyCount = 0;
+    }
+
+    public static int makePiece(int type, int color) {
+        return (color << 3) | type;
+    }
+
+    public static int typeOf(int piece) {
+        return piece & 7;
+    }
+
+    public static int colorOf(int piece) {
+        return piece >> 3;
+    }
+
+    public static int castlingBit(int color, int side) {
+        return 1 << (color * 2 + side);
+    }
+
+    public static int castlingRightsOf(int color) {
+        return castlingBit(color, QUEEN_SIDE) | castlingBit(color, KING_SIDE);
+    }
+
+    public boolean canCastle(int color, int side) {
+        return (castlingRights & castlingBit(color, side)) != 0;
+    }
+
+    public void makeMove(Move move) {
+        makeMove(move.encode());
+    }
+
+    public void makeMove(int move) {
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+        int piece = squares[startSquare];
+        int color = colorOf(piece);
+        int capturedPiece = squares[targetSquare];
+
+        // Remember the state that gets lost by making the move
+        movesPlayed[plyCount] = move;
+        capturedPieces[plyCount] = capturedPiece;
+        previousCastlingRights[plyCount] = castlingRights;
+        previousEnPassantSquares[plyCount] = enPassantSquare;
+        previousHalfmoveClocks[plyCount] = halfmoveClock;
+        previousZobristKeys[plyCount] = zobristKey;
+        plyCount++;
+
+        // Captures and pawn moves can never be undone, so the clock starts again
+        if(capturedPiece != EMPTY || typeOf(piece) == Piece.PAWN) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+
+        // Remove captured piece and move piece from start square to target square
+        if(capturedPiece != EMPTY) {
+            removePiece(targetSquare);
+        }
+        movePiece(startSquare, targetSquare);
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        enPassantSquare = -1;
+
+        // Handle special moves
+        switch (moveFlag) {
+            case MoveFlags.NONE -> {}
+            // The square that was skipped by the pawn can be captured en passant
+            case MoveFlags.DOUBLE_PAWN_PUSH -> setEnPassantSquare((startSquare + targetSquare) / 2, color);
+            case MoveFlags.EN_PASSANT -> removePiece(enPassantCaptureSquare(targetSquare, color));
+            // Move the rook next to the other side of the king to complete the castle
+            case MoveFlags.CASTLE_KING_SIDE -> movePiece(targetSquare + 1, targetSquare - 1);
+            case MoveFlags.CASTLE_QUEEN_SIDE -> movePiece(targetSquare - 2, targetSquare + 1);
+            default -> {
+                removePiece(targetSquare);
+                addPiece(targetSquare, makePiece(MoveFlags.promotionType(moveFlag), color));
+            }
+        }
+
+        zobristKey ^= Zobrist.CASTLING_RIGHTS[castlingRights];
+        castlingRights &= CASTLING_RIGHTS_MASK[startSquare] & CASTLING_RIGHTS_MASK[targetSquare];
+        zobristKey ^= Zobrist.CASTLING_RIGHTS[castlingRights];
+
+        if(color == Piece.DARK) fullmoveNumber++;
+        colorAtMove = colorAtMove == Piece.DARK ? Piece.WHITE : Piece.DARK;
+        zobristKey ^= Zobrist.COLOR_AT_MOVE;
+    }
+
+    void setEnPassantSquare(int square, int color) {
+        // Only remember the square if an enemy pawn could capture there,
+        // otherwise positions that are the same would get different keys
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        if((Bitboards.PAWN_ATTACKS[color][square] & pieceBitboards[enemyColor][Piece.PAWN]) == 0) return;
+
+        enPassantSquare = square;
+        zobristKey ^= Zobrist.enPassantKey(square);
+    }
+
+    // Takes back the last move made on this position
+    public void unmakeMove() {
+        plyCount--;
+        int move = movesPlayed[plyCount];
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+
+        colorAtMove = colorAtMove == Piece.DARK ? Piece.WHITE : Piece.DARK;
+        int color = colorAtMove;
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        if(color == Piece.DARK) fullmoveNumber--;
+
+        // Undo special moves first, so the piece on the target square is the one that moved
+        switch (moveFlag) {
+            case MoveFlags.NONE, MoveFlags.DOUBLE_PAWN_PUSH -> {}
+            case MoveFlags.EN_PASSANT -> addPiece(enPassantCaptureSquare(targetSquare, color), makePiece(Piece.PAWN, enemyColor));
+            case MoveFlags.CASTLE_KING_SIDE -> movePiece(targetSquare - 1, targetSquare + 1);
+            case MoveFlags.CASTLE_QUEEN_SIDE -> movePiece(targetSquare + 1, targetSquare - 2);
+            default -> {
+                removePiece(targetSquare);
+                addPiece(targetSquare, makePiece(Piece.PAWN, color));
+            }
+        }
+
+        movePiece(targetSquare, startSquare);
+        if(capturedPieces[plyCount] != EMPTY) {
+            addPiece(targetSquare, capturedPieces[plyCount]);
+        }
+
+        castlingRights = previousCastlingRights[plyCount];
+        enPassantSquare = previousEnPassantSquares[plyCount];
+        halfmoveClock = previousHalfmoveClocks[plyCount];
+        // Restoring the key also covers the castling rights, en passant square and color at move
+        zobristKey = previousZobristKeys[plyCount];
+    }
+
+    // Passes the turn to the other color without moving a piece, used by the null move pruning of the search
+    // Stored as Move.NONE, so it can be found by lastMove()
+    public void makeNullMove() {
+        movesPlayed[plyCount] = Move.NONE;
+        capturedPieces[plyCount] = EMPTY;
+        previousCastlingRights[plyCount] = castlingRights;
+        previousEnPassantSquares[plyCount] = enPassantSquare;
+        previousHalfmoveClocks[plyCount] = halfmoveClock;
+        previousZobristKeys[plyCount] = zobristKey;
+        plyCount++;
+
+        // Positions before a null move cannot be repeated after it
+        halfmoveClock = 0;
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        enPassantSquare = -1;
+
+        if(colorAtMove == Piece.DARK) fullmoveNumber++;
+        colorAtMove = colorAtMove == Piece.DARK ? Piece.WHITE : Piece.DARK;
+        zobristKey ^= Zobrist.COLOR_AT_MOVE;
+    }
+
+    public void unmakeNullMove() {
+        plyCount--;
+        colorAtMove = colorAtMove == Piece.DARK ? Piece.WHITE : Piece.DARK;
+        if(colorAtMove == Piece.DARK) fullmoveNumber--;
+        enPassantSquare = previousEnPassantSquares[plyCount];
+        halfmoveClock = previousHalfmoveClocks[plyCount];
+        zobristKey = previousZobristKeys[plyCount];
+    }
+
+    // Last move made on this position, Move.NONE for a null move or if no move was made
+    public int lastMove() {
+        return plyCount == 0 ? Move.NONE : movesPlayed[plyCount - 1];
+    }
+
+    // Whether the color has any piece besides its king and pawns
+    public boolean hasNonPawnMaterial(int color) {
+        return (colorBitboards[color] & ~pieceBitboards[color][Piece.KING] & ~pieceBitboards[color][Piece.PAWN]) != 0;
+    }
+
+    // Whether the position occurred before since the last capture or pawn move
+    public boolean isRepetition() {
+        int firstPly = Math.max(0, plyCount - halfmoveClock);
+        // Only positions with the same color at move can be equal
+        for(int ply = plyCount - 2; ply >= firstPly; ply -= 2) {
+            if(previousZobristKeys[ply] == zobristKey) return true;
+        }
+        return false;
+    }
+
+    public long calculateZobristKey() {
+        long key = 0L;
+        for(int square = 0; square < 64; square++) {
+            if(squares[square] == EMPTY) continue;
+            key ^= Zobrist.PIECES[squares[square]][square];
+        }
+        key ^= Zobrist.CASTLING_RIGHTS[castlingRights];
+        key ^= Zobrist.enPassantKey(enPassantSquare);
+        if(colorAtMove == Piece.WHITE) {
+            key ^= Zobrist.COLOR_AT_MOVE;
+        }
+        return key;
+    }
+
+    public long calculatePawnKey() {
+        long key = 0L;
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            long pawns = pieceBitboards[color][Piece.PAWN];
+            while(pawns != 0) {
+                key ^= Zobrist.PIECES[makePiece(Piece.PAWN, color)][Long.numberOfTrailingZeros(pawns)];
+                pawns &= pawns - 1;
+            }
+        }
+        return key;
+    }
+
+    private static int enPassantCaptureSquare(int targetSquare, int color) {
+        // Captured pawn is behind the target square from the perspective of the moving pawn
+        int directionOfCapturedPiece = color == Piece.WHITE ? Directions.BOTTOM : Directions.TOP;
+        return targetSquare + Directions.OFFSETS[directionOfCapturedPiece];
+    }
+
+    public void addPiece(int square, int piece) {
+        squares[square] = piece;
+        pieceBitboards[colorOf(piece)][typeOf(piece)] |= Bitboards.squareBit(square);
+        colorBitboards[colorOf(piece)] |= Bitboards.squareBit(square);
+        zobristKey ^= Zobrist.PIECES[piece][square];
+        if(typeOf(piece) == Piece.PAWN) pawnKey ^= Zobrist.PIECES[piece][square];
+        midgameScore += Evaluation.MIDGAME_VALUES[piece][square];
+        endgameScore += Evaluation.ENDGAME_VALUES[piece][square];
+        phase += Evaluation.PHASE_VALUES[typeOf(piece)];
+    }
+
+    public void removePiece(int square) {
+        int piece = squares[square];
+        squares[square] = EMPTY;
+        pieceBitboards[colorOf(piece)][typeOf(piece)] &= ~Bitboards.squareBit(square);
+        colorBitboards[colorOf(piece)] &= ~Bitboards.squareBit(square);
+        zobristKey ^= Zobrist.PIECES[piece][square];
+        if(typeOf(piece) == Piece.PAWN) pawnKey ^= Zobrist.PIECES[piece][square];
+        midgameScore -= Evaluation.MIDGAME_VALUES[piece][square];
+        endgameScore -= Evaluation.ENDGAME_VALUES[piece][square];
+        phase -= Evaluation.PHASE_VALUES[typeOf(piece)];
+    }
+
+    public void movePiece(int startSquare, int targetSquare) {
+        int piece = squares[startSquare];
+        long startAndTarget = Bitboards.squareBit(startSquare) | Bitboards.squareBit(targetSquare);
+        squares[startSquare] = EMPTY;
+        squares[targetSquare] = piece;
+        pieceBitboards[colorOf(piece)][typeOf(piece)] ^= startAndTarget;
+        colorBitboards[colorOf(piece)] ^= startAndTarget;
+        zobristKey ^= Zobrist.PIECES[piece][startSquare] ^ Zobrist.PIECES[piece][targetSquare];
+        if(typeOf(piece) == Piece.PAWN) pawnKey ^= Zobrist.PIECES[piece][startSquare] ^ Zobrist.PIECES[piece][targetSquare];
+        midgameScore += Evaluation.MIDGAME_VALUES[piece][targetSquare] - Evaluation.MIDGAME_VALUES[piece][startSquare];
+        endgameScore += Evaluation.ENDGAME_VALUES[piece][targetSquare] - Evaluation.ENDGAME_VALUES[piece][startSquare];
+    }
+
+    public long occupiedSquares() {
+        return colorBitboards[Piece.WHITE] | colorBitboards[Piece.DARK];
+    }
+
+    public boolean isInCheck() {
+        int enemyColor = colorAtMove == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        int kingSquare = Long.numberOfTrailingZeros(pieceBitboards[colorAtMove][Piece.KING]);
+        return isSquareAttacked(kingSquare, enemyColor, occupiedSquares());
+    }
+
+    public boolean isSquareAttacked(int square, int color) {
+        return isSquareAttacked(square, color, occupiedSquares());
+    }
+
+    // Whether any piece of the color attacks the square when the board is occupied like given
+    // Cheaper than attackersTo() as it stops at the first attacker and only looks at one color
+    public boolean isSquareAttacked(int square, int color, long occupancy) {
+        long[] bitboards = pieceBitboards[color];
+        int enemyColor = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        // Pawns of the color attack the square from where a pawn of the other color on it would attack
+        if((Bitboards.PAWN_ATTACKS[enemyColor][square] & bitboards[Piece.PAWN]) != 0) return true;
+        if((Bitboards.KNIGHT_ATTACKS[square] & bitboards[Piece.KNIGHT]) != 0) return true;
+        if((Bitboards.KING_ATTACKS[square] & bitboards[Piece.KING]) != 0) return true;
+
+        long straightSliders = bitboards[Piece.ROOK] | bitboards[Piece.QUEEN];
+        if(straightSliders != 0 && (Bitboards.rookAttacks(square, occupancy) & straightSliders) != 0) return true;
+        long diagonalSliders = bitboards[Piece.BISHOP] | bitboards[Piece.QUEEN];
+        return diagonalSliders != 0 && (Bitboards.bishopAttacks(square, occupancy) & diagonalSliders) != 0;
+    }
+
+    // Every piece of both colors attacking the given square when the board is occupied like given
+    public long attackersTo(int square, long occupancy) {
+        long[] white = pieceBitboards[Piece.WHITE];
+        long[] dark = pieceBitboards[Piece.DARK];
+        long rooksAndQueens = white[Piece.ROOK] | white[Piece.QUEEN] | dark[Piece.ROOK] | dark[Piece.QUEEN];
+        long bishopsAndQueens = white[Piece.BISHOP] | white[Piece.QUEEN] | dark[Piece.BISHOP] | dark[Piece.QUEEN];
+
+        return (Bitboards.PAWN_ATTACKS[Piece.DARK][square] & white[Piece.PAWN])
+                | (Bitboards.PAWN_ATTACKS[Piece.WHITE][square] & dark[Piece.PAWN])
+                | (Bitboards.KNIGHT_ATTACKS[square] & (white[Piece.KNIGHT] | dark[Piece.KNIGHT]))
+                | (Bitboards.KING_ATTACKS[square] & (white[Piece.KING] | dark[Piece.KING]))
+                | (Bitboards.rookAttacks(square, occupancy) & rooksAndQueens)
+                | (Bitboards.bishopAttacks(square, occupancy) & bishopsAndQueens);
+    }
+}
@@ -0,0 +1,78 @@
+package com.juliuswendland.chessai;
+
+// Standard algebraic notation, e.g. Nbd7, exd5, e8=Q or O-O, as used by EPD files and PGN
+public class San {
+    // Letters of the piece types, indexed by type, pawns have none
+    private static final String PIECE_LETTERS = "KQBNR";
+
+    // Notation of a legal move of the position, without check or mate signs
+    public static String write(Position position, int move) {
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+        if(moveFlag == MoveFlags.CASTLE_KING_SIDE) return "O-O";
+        if(moveFlag == MoveFlags.CASTLE_QUEEN_SIDE) return "O-O-O";
+
+        int type = Position.typeOf(position.squares[startSquare]);
+        boolean capture = position.squares[targetSquare] != Position.EMPTY || moveFlag == MoveFlags.EN_PASSANT;
+        StringBuilder notation = new StringBuilder();
+
+        if(type == Piece.PAWN) {
+            if(capture) notation.append(Move.squareName(startSquare).charAt(0));
+        } else {
+            notation.append(PIECE_LETTERS.charAt(type));
+            notation.append(disambiguation(position, move, type));
+        }
+
+        if(capture) notation.append('x');
+        notation.append(Move.squareName(targetSquare));
+        if(MoveFlags.isPromotion(moveFlag)) {
+            notation.append('=').append(PIECE_LETTERS.charAt(MoveFlags.promotionType(moveFlag)));
+        }
+        return notation.toString();
+    }
+
+    // The legal move of the position the notation stands for, Move.NONE if there is none
+    // Check signs, annotations and the capture and promotion signs are ignored,
+    // moves in UCI notation like e2e4 are accepted as well
+    public static int read(Position position, String notation) {
+        String wanted = normalize(notation);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int numberOfMoves = new MoveGenerator(position).generateLegalMoves(moves);
+        for(int i = 0; i < numberOfMoves; i++) {
+            if(normalize(write(position, moves[i])).equals(wanted) || Move.toUci(moves[i]).equals(notation)) return moves[i];
+        }
+        return Move.NONE;
+    }
+
+    private static String normalize(String notation) {
+        return notation.replace('0', 'O').replaceAll("[x=+#!?]", "");
+    }
+
+    // File, rank or both of the start square, as far as needed to tell the move apart from moves of
+    // other pieces of the same type to the same square
+    private static String disambiguation(Position position, int move, int type) {
+        int startSquare = Move.startSquareOf(move);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int numberOfMoves = new MoveGenerator(position).generateLegalMoves(moves);
+
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for(int i = 0; i < numberOfMoves; i++) {
+            int otherStartSquare = Move.startSquareOf(moves[i]);
+            if(otherStartSquare == startSquare || Move.targetSquareOf(moves[i]) != Move.targetSquareOf(move)
+                    || Position.typeOf(position.squares[otherStartSquare]) != type) continue;
+
+            ambiguous = true;
+            if(otherStartSquare % 8 == startSquare % 8) sameFile = true;
+            if(otherStartSquare / 8 == startSquare / 8) sameRank = true;
+        }
+
+        String squareName = Move.squareName(startSquare);
+        if(!ambiguous) return "";
+        if(!sameFile) return squareName.substring(0, 1);
+        if(!sameRank) return squareName.substring(1);
+        return squareName;
+    }
+}
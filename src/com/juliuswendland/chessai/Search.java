@@ -0,0 +1,491 @@
+package com.juliuswendland.chessai;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Negamax alpha-beta search with iterative deepening, aspiration windows and time control
+// Leaves are resolved by a quiescence search over captures and promotions, so they are only evaluated when quiet
+// Outside the principal variation the tree is pruned and reduced selectively, see SearchOptions
+// Runs on the headless position and the preallocated move lists, so searching does not allocate
+public class Search {
+    public static final int MAX_DEPTH = 64;
+    public static final int INFINITY = 32001;
+    public static final int MATE_SCORE = 32000;
+    // Scores beyond this bound mean a forced mate was found
+    public static final int MATE_BOUND = MATE_SCORE - MoveLists.MAX_PLY;
+
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int MIN_ASPIRATION_DEPTH = 4;
+    private static final int MAX_HISTORY = 16384;
+    private static final int MAX_HISTORY_BONUS = 1200;
+    // A capture in the quiescence search is skipped if even winning the captured piece plus this margin
+    // cannot raise the score above alpha
+    private static final int DELTA_MARGIN = 200;
+    // Pruning by the static evaluation is only trusted this close to the leaves
+    private static final int MAX_REVERSE_FUTILITY_DEPTH = 6;
+    private static final int REVERSE_FUTILITY_MARGIN = 80;
+    private static final int MAX_FUTILITY_DEPTH = 3;
+    private static final int FUTILITY_MARGIN = 120;
+    private static final int MIN_NULL_MOVE_DEPTH = 3;
+    private static final int MIN_REDUCTION_DEPTH = 3;
+    // Moves searched before the first one that can be reduced
+    private static final int MOVES_BEFORE_REDUCTIONS = 3;
+    // Late move reductions by depth and number of the move, growing with the logarithm of both
+    private static final int[][] REDUCTIONS = new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+
+    static {
+        for(int depth = 1; depth <= MAX_DEPTH; depth++) {
+            for(int moveNumber = 1; moveNumber < MoveGenerator.MAX_MOVES; moveNumber++) {
+                REDUCTIONS[depth][moveNumber] = (int) (0.75 + (Math.log(depth) * Math.log(moveNumber) / 2.25));
+            }
+        }
+    }
+    // Reading the clock is expensive, so limits are only checked every few nodes
+    private static final int NODES_BETWEEN_LIMIT_CHECKS = 2048;
+
+    private final Position position;
+    private final TranspositionTable transpositionTable;
+    // Quiet moves searched at every ply, so the ones before a cutoff can be punished in the history
+    private final MoveLists quietMovesSearched = new MoveLists();
+    private final MovePicker[] movePickers = new MovePicker[MoveLists.MAX_PLY];
+    // Two quiet moves per ply that caused a cutoff in a sibling node
+    private final int[][] killerMoves = new int[MoveLists.MAX_PLY][2];
+    // Butterfly history: how often a quiet move caused a cutoff, indexed by color and MovePicker.historyIndex()
+    private final int[][] history = new int[2][64 * 64];
+    private final PawnHashTable pawnHashTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+    private SearchOptions options = new SearchOptions();
+    // Triangular table, principal variation found at a ply is stored from index ply onwards
+    private final int[][] principalVariation = new int[MoveLists.MAX_PLY][MoveLists.MAX_PLY];
+    private final int[] principalVariationLength = new int[MoveLists.MAX_PLY];
+
+    // Helper threads of a parallel search (index above 0) search the same root slightly differently
+    private int threadIndex = 0;
+    // Informed about the result of every completed iteration, null if nobody listens
+    private Consumer<SearchResult> iterationListener;
+
+    private SearchLimits limits;
+    private long startTime;
+    private long nodes;
+    private int rootDepth;
+    private int previousBestMove;
+    // Set by stop() from any thread and only cleared by prepare(), so a stop sent before the search
+    // started is never lost, the limits of a search end it through their own flag
+    private volatile boolean stopRequested;
+    private boolean limitReached;
+
+    public Search(Position position) {
+        this(position, new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB));
+    }
+
+    public Search(Position position, TranspositionTable transpositionTable) {
+        this.position = position;
+        this.transpositionTable = transpositionTable;
+        for(int ply = 0; ply < MoveLists.MAX_PLY; ply++) {
+            // Every ply gets its own generator, as pseudo-legal moves are checked against what it found
+            // for its position while deeper plies generate their moves
+            movePickers[ply] = new MovePicker(position, new MoveGenerator(position));
+        }
+    }
+
+    // Can be called from another thread to end the running search as soon as possible,
+    // or the next one if it was prepared but has not started yet
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Must be called before a search that can be stopped is handed to the thread running it,
+    // a stop from an earlier search would end it right away otherwise
+    public void prepare() {
+        stopRequested = false;
+        nodes = 0;
+    }
+
+    public void setIterationListener(Consumer<SearchResult> iterationListener) {
+        this.iterationListener = iterationListener;
+    }
+
+    public void setOptions(SearchOptions options) {
+        this.options = options;
+    }
+
+    public void setThreadIndex(int threadIndex) {
+        this.threadIndex = threadIndex;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public PawnHashTable getPawnHashTable() {
+        return pawnHashTable;
+    }
+
+    public SearchResult search(SearchLimits limits) {
+        this.limits = limits;
+        startTime = System.nanoTime();
+        nodes = 0;
+        pawnHashTable.resetStatistics();
+        // Killers belong to positions of the last search, the history is only made less important
+        for(int[] killers : killerMoves) {
+            killers[0] = Move.NONE;
+            killers[1] = Move.NONE;
+        }
+        for(int[] colorHistory : history) {
+            for(int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] /= 8;
+            }
+        }
+        previousBestMove = Move.NONE;
+        for(MovePicker movePicker : movePickers) {
+            movePicker.setPseudoLegalGeneration(options.pseudoLegalGeneration);
+        }
+        limitReached = false;
+        // Entries of helper threads belong to the search of the main thread
+        if(threadIndex == 0) transpositionTable.newSearch();
+
+        SearchResult result = new SearchResult(Move.NONE, 0, 0, 0, 0, new int[0]);
+        int score = 0;
+
+        // Every second helper thread searches one ply deeper than the others,
+        // so the threads fill the shared transposition table with different depths
+        int firstDepth = 1 + (threadIndex % 2);
+
+        for(rootDepth = firstDepth; rootDepth <= limits.depth; rootDepth++) {
+            score = aspirationSearch(rootDepth, score);
+
+            // Results of an aborted iteration are incomplete and therefore discarded
+            if(isAborted()) break;
+
+            int[] bestLine = Arrays.copyOf(principalVariation[0], principalVariationLength[0]);
+            result = new SearchResult(bestLine.length > 0 ? bestLine[0] : Move.NONE, score, rootDepth, nodes, elapsedMillis(), bestLine);
+            previousBestMove = result.bestMove();
+            if(iterationListener != null) iterationListener.accept(result);
+
+            // There are no legal moves at all or a mate was found that deeper searches cannot improve
+            if(result.bestMove() == Move.NONE) break;
+            if(Math.abs(score) >= MATE_BOUND && MATE_SCORE - Math.abs(score) <= rootDepth) break;
+            // Another iteration would most likely not finish in time
+            if(elapsedMillis() >= limits.softTimeMillis) break;
+        }
+
+        return result;
+    }
+
+    private int aspirationSearch(int depth, int previousScore) {
+        if(depth < MIN_ASPIRATION_DEPTH) {
+            return negamax(depth, -INFINITY, INFINITY, 0);
+        }
+
+        // Search with a small window around the last score and widen it whenever the score falls outside
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(previousScore - delta, -INFINITY);
+        int beta = Math.min(previousScore + delta, INFINITY);
+
+        while(true) {
+            int score = negamax(depth, alpha, beta, 0);
+            if(isAborted()) return score;
+
+            if(score <= alpha) {
+                alpha = Math.max(score - delta, -INFINITY);
+            } else if(score >= beta) {
+                beta = Math.min(score + delta, INFINITY);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        principalVariationLength[ply] = ply;
+        nodes++;
+
+        if(nodes % NODES_BETWEEN_LIMIT_CHECKS == 0) {
+            checkLimits();
+        }
+        if(isAborted()) return 0;
+
+        // Repeating a position or reaching the fifty move rule is a draw
+        if(ply > 0 && (position.halfmoveClock >= 100 || position.isRepetition())) return 0;
+
+        boolean inCheck = position.isInCheck();
+        // Checks are searched deeper, so a sequence of checks does not push a mate beyond the horizon
+        if(inCheck && options.checkExtensions && ply > 0) depth++;
+
+        if(depth <= 0) return quiescence(alpha, beta, ply);
+        if(ply >= MoveLists.MAX_PLY - 1) return Evaluation.evaluate(position, pawnHashTable);
+
+        // Results of an earlier search of this position may already be good enough
+        long entry = transpositionTable.probe(position.zobristKey);
+        int hashMove = TranspositionTable.moveOf(entry);
+        if(entry != 0 && ply > 0 && TranspositionTable.depthOf(entry) >= depth) {
+            int score = TranspositionTable.scoreOf(entry, ply);
+            int bound = TranspositionTable.boundOf(entry);
+            if(bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                return score;
+            }
+        }
+
+        // Only nodes with a null window can be pruned, the principal variation is always searched fully
+        boolean principalVariationNode = beta - alpha > 1;
+        int staticEvaluation = inCheck ? -INFINITY : Evaluation.evaluate(position, pawnHashTable);
+        boolean canPrune = !principalVariationNode && !inCheck && Math.abs(beta) < MATE_BOUND;
+
+        // Reverse futility pruning: the position is so good that no move will lose the margin again
+        if(canPrune && options.reverseFutilityPruning && depth <= MAX_REVERSE_FUTILITY_DEPTH
+                && staticEvaluation - (REVERSE_FUTILITY_MARGIN * depth) >= beta) {
+            return staticEvaluation;
+        }
+
+        // Null move pruning: if the position still fails high after passing the turn, a real move will too
+        // Without pieces zugzwang is common and passing would be better than every move, so pawn endings are excluded
+        // Two null moves in a row would only search the same position with less depth
+        if(canPrune && options.nullMovePruning && depth >= MIN_NULL_MOVE_DEPTH && staticEvaluation >= beta
+                && position.lastMove() != Move.NONE && position.hasNonPawnMaterial(position.colorAtMove)) {
+            int reduction = 3 + (depth / 6);
+            position.makeNullMove();
+            int score = -negamax(depth - 1 - reduction, -beta, -beta + 1, ply + 1);
+            position.unmakeNullMove();
+
+            if(isAborted()) return 0;
+            // A mate found after passing the turn is not proven for the real moves
+            if(score >= beta) return score >= MATE_BOUND ? beta : score;
+        }
+
+        MovePicker movePicker = movePickers[ply];
+        int[] history = this.history[position.colorAtMove];
+        if(ply == 0) {
+            // Best move of the last iteration is searched first at the root
+            int numberOfMoves = movePicker.initWithAllMoves();
+            int[] moves = movePicker.getMoves();
+            moveToFront(moves, numberOfMoves, previousBestMove != Move.NONE ? previousBestMove : hashMove);
+            if(threadIndex > 0) {
+                rotateMoves(moves, numberOfMoves, threadIndex);
+            }
+        } else {
+            movePicker.init(hashMove, killerMoves[ply][0], killerMoves[ply][1], history);
+        }
+
+        int[] quietMoves = quietMovesSearched.atPly(ply);
+        int numberOfQuietMoves = 0;
+        int numberOfMoves = 0;
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int move;
+        while((move = movePicker.next()) != Move.NONE) {
+            numberOfMoves++;
+            boolean quiet = MovePicker.isQuiet(position, move);
+
+            position.makeMove(move);
+            boolean givesCheck = position.isInCheck();
+            boolean canPruneMove = canPrune && quiet && !givesCheck && bestScore > -MATE_BOUND;
+
+            // Futility pruning: a quiet move will not win enough to bring the static evaluation up to alpha
+            if(canPruneMove && options.futilityPruning && depth <= MAX_FUTILITY_DEPTH
+                    && staticEvaluation + (FUTILITY_MARGIN * depth) <= alpha) {
+                position.unmakeMove();
+                continue;
+            }
+
+            int score;
+            if(options.lateMoveReductions && ply > 0 && depth >= MIN_REDUCTION_DEPTH && numberOfMoves > MOVES_BEFORE_REDUCTIONS
+                    && quiet && !givesCheck && !inCheck) {
+                // Late moves are most likely bad, so they are searched with less depth and a null window first
+                // and only searched again fully if they beat alpha anyway
+                // Root moves and checks are never reduced, quiet sacrifices like a queen move into a mate would
+                // otherwise only be found iterations later
+                int reduction = REDUCTIONS[Math.min(depth, MAX_DEPTH)][Math.min(numberOfMoves, MoveGenerator.MAX_MOVES - 1)];
+                if(principalVariationNode) reduction--;
+                reduction = Math.max(0, Math.min(reduction, depth - 2));
+
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if(score > alpha && !isAborted()) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            } else {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            }
+            position.unmakeMove();
+
+            if(isAborted()) return 0;
+
+            if(score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                }
+            }
+
+            if(alpha >= beta) {
+                if(quiet) updateQuietMoveOrdering(ply, depth, move, history, quietMoves, numberOfQuietMoves);
+                break;
+            }
+            if(quiet) quietMoves[numberOfQuietMoves++] = move;
+        }
+
+        // Checkmate or stalemate, faster mates get better scores
+        if(numberOfMoves == 0) {
+            return inCheck ? -MATE_SCORE + ply : 0;
+        }
+
+        int bound;
+        if(bestScore >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        } else if(bestScore > originalAlpha) {
+            bound = TranspositionTable.EXACT;
+        } else {
+            bound = TranspositionTable.UPPER_BOUND;
+        }
+        transpositionTable.store(position.zobristKey, bestMove, bestScore, depth, bound, ply);
+
+        return bestScore;
+    }
+
+    // Searches captures and promotions until the position is quiet, so the evaluation is not taken
+    // in the middle of an exchange. The color at move can always stand pat on the static evaluation
+    // instead of capturing, unless it is in check, then every evasion is searched.
+    private int quiescence(int alpha, int beta, int ply) {
+        principalVariationLength[ply] = ply;
+        nodes++;
+
+        if(nodes % NODES_BETWEEN_LIMIT_CHECKS == 0) {
+            checkLimits();
+        }
+        if(isAborted()) return 0;
+
+        if(position.halfmoveClock >= 100 || position.isRepetition()) return 0;
+        if(ply >= MoveLists.MAX_PLY - 1) return Evaluation.evaluate(position, pawnHashTable);
+
+        boolean inCheck = position.isInCheck();
+        MovePicker movePicker = movePickers[ply];
+        int bestScore;
+        int standPat = 0;
+        if(inCheck) {
+            bestScore = -INFINITY;
+            movePicker.init(Move.NONE, Move.NONE, Move.NONE, history[position.colorAtMove]);
+        } else {
+            standPat = Evaluation.evaluate(position, pawnHashTable);
+            if(standPat >= beta) return standPat;
+            if(standPat > alpha) alpha = standPat;
+            bestScore = standPat;
+            // Captures losing material are left out by the move picker
+            movePicker.initQuiescence();
+        }
+
+        int numberOfMoves = 0;
+        int move;
+        while((move = movePicker.next()) != Move.NONE) {
+            numberOfMoves++;
+            if(!inCheck && standPat + capturedValue(move) + DELTA_MARGIN <= alpha
+                    && !MoveFlags.isPromotion(Move.moveFlagOf(move))) {
+                continue;
+            }
+
+            position.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            position.unmakeMove();
+
+            if(isAborted()) return 0;
+
+            if(score > bestScore) {
+                bestScore = score;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                }
+            }
+            if(alpha >= beta) break;
+        }
+
+        if(inCheck && numberOfMoves == 0) return -MATE_SCORE + ply;
+        return bestScore;
+    }
+
+    private int capturedValue(int move) {
+        if(Move.moveFlagOf(move) == MoveFlags.EN_PASSANT) return Evaluation.PIECE_VALUES[Piece.PAWN];
+        int captured = position.squares[Move.targetSquareOf(move)];
+        return captured == Position.EMPTY ? 0 : Evaluation.PIECE_VALUES[Position.typeOf(captured)];
+    }
+
+    // Remembers a quiet move that caused a cutoff as killer and in the history,
+    // the quiet moves searched before it without a cutoff become less important in the history
+    private void updateQuietMoveOrdering(int ply, int depth, int move, int[] history, int[] quietMoves,
+                                         int numberOfQuietMoves) {
+        int[] killers = killerMoves[ply];
+        if(killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+
+        int bonus = Math.min(depth * depth, MAX_HISTORY_BONUS);
+        addHistory(history, move, bonus);
+        for(int i = 0; i < numberOfQuietMoves; i++) {
+            addHistory(history, quietMoves[i], -bonus);
+        }
+    }
+
+    private static void addHistory(int[] history, int move, int bonus) {
+        // Values approach MAX_HISTORY slower the closer they get, so they never overflow
+        int index = MovePicker.historyIndex(move);
+        history[index] += bonus - (history[index] * Math.abs(bonus) / MAX_HISTORY);
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = principalVariation[ply];
+        int[] lineOfNextPly = principalVariation[ply + 1];
+        line[ply] = move;
+        for(int i = ply + 1; i < principalVariationLength[ply + 1]; i++) {
+            line[i] = lineOfNextPly[i];
+        }
+        principalVariationLength[ply] = Math.max(principalVariationLength[ply + 1], ply + 1);
+    }
+
+    private static void moveToFront(int[] moves, int numberOfMoves, int move) {
+        for(int i = 0; i < numberOfMoves; i++) {
+            if(moves[i] != move) continue;
+            moves[i] = moves[0];
+            moves[0] = move;
+            return;
+        }
+    }
+
+    // Depth 1 always finishes, so there is a move to play in any case
+    private boolean isAborted() {
+        return (stopRequested || limitReached) && rootDepth > 1;
+    }
+
+    // Moves every move but the first one the given number of places to the front
+    private static void rotateMoves(int[] moves, int numberOfMoves, int places) {
+        if(numberOfMoves <= 2) return;
+        places %= numberOfMoves - 1;
+        for(int i = 0; i < places; i++) {
+            int move = moves[1];
+            System.arraycopy(moves, 2, moves, 1, numberOfMoves - 2);
+            moves[numberOfMoves - 1] = move;
+        }
+    }
+
+    private void checkLimits() {
+        if(nodes >= limits.nodes || elapsedMillis() >= limits.hardTimeMillis) {
+            limitReached = true;
+        }
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+}
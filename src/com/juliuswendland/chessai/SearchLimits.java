@@ -0,0 +1,45 @@
+package com.juliuswendland.chessai;
+
+public class SearchLimits {
+    // Number of moves the remaining time is split into if the number of moves to go is unknown
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    public int depth = Search.MAX_DEPTH;
+    public long nodes = Long.MAX_VALUE;
+    // No new iteration is started once the soft time is used up,
+    // the hard time aborts the running iteration
+    // Volatile because a ponder hit sets them while the search is running
+    public volatile long softTimeMillis = Long.MAX_VALUE;
+    public volatile long hardTimeMillis = Long.MAX_VALUE;
+
+    public static SearchLimits depth(int depth) {
+        SearchLimits limits = new SearchLimits();
+        limits.depth = depth;
+        return limits;
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        SearchLimits limits = new SearchLimits();
+        limits.nodes = nodes;
+        return limits;
+    }
+
+    public static SearchLimits moveTime(long millis) {
+        SearchLimits limits = new SearchLimits();
+        limits.softTimeMillis = millis;
+        limits.hardTimeMillis = millis;
+        return limits;
+    }
+
+    // Splits the remaining time on the clock into a budget for one move
+    public static SearchLimits clock(long remainingMillis, long incrementMillis, int movesToGo) {
+        if(movesToGo <= 0) movesToGo = DEFAULT_MOVES_TO_GO;
+
+        SearchLimits limits = new SearchLimits();
+        limits.softTimeMillis = Math.max(1, (remainingMillis / movesToGo) + (incrementMillis * 3 / 4));
+        // Leave some time on the clock in any case
+        limits.hardTimeMillis = Math.max(1, Math.min(limits.softTimeMillis * 4, remainingMillis / 3));
+        limits.softTimeMillis = Math.min(limits.softTimeMillis, limits.hardTimeMillis);
+        return limits;
+    }
+}
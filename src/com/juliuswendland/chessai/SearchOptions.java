@@ -0,0 +1,20 @@
+package com.juliuswendland.chessai;
+
+// Switches for the selective parts of the search and the move generation,
+// so each of them can be turned off to measure what it is worth
+// Only changed between searches, the threads of a parallel search share one instance
+public class SearchOptions {
+    // Lets the enemy move twice and cuts the node off if that still fails high
+    public boolean nullMovePruning = true;
+    // Searches quiet moves late in the move order with less depth first
+    public boolean lateMoveReductions = true;
+    // Cuts nodes off near the leaves whose static evaluation is far above beta
+    public boolean reverseFutilityPruning = true;
+    // Skips quiet moves near the leaves if the static evaluation is far below alpha
+    public boolean futilityPruning = true;
+    // Searches positions in check one ply deeper
+    public boolean checkExtensions = true;
+    // Generates pseudo-legal moves and only checks the ones that are searched for legality
+    // Off by default, the legal generation finds pins with a few lookups and was not slower in our measurements
+    public boolean pseudoLegalGeneration = false;
+}
@@ -0,0 +1,8 @@
+package com.juliuswendland.chessai;
+
+// Result of the deepest completed iteration of a search
+public record SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] principalVariation) {
+    public long nodesPerSecond() {
+        return nodes * 1000 / Math.max(1, timeMillis);
+    }
+}
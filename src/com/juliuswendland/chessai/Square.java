@@ -6,7 +6,6 @@ import java.awt.*;
 public class Square extends JPanel {
     private final int index, rank;
     private Piece piece = null;
-    private final int[] numberOfSquaresToBorder = new int[8];
     Color squareColor;
     public boolean isTargetSquare = false;
 
@@ -18,20 +17,6 @@ public class Square extends JPanel {
         setLayout(new BorderLayout());
         setBackground(squareColor);
         setVisible(true);
-
-        calculateNumberOfSquaresToBorder(rank, file);
-    }
-
-    private void calculateNumberOfSquaresToBorder(int rank, int file) {
-        numberOfSquaresToBorder[0] = file;
-        numberOfSquaresToBorder[2] = rank;
-        numberOfSquaresToBorder[4] = 7 - file;
-        numberOfSquaresToBorder[6] = 7 - rank;
-
-        numberOfSquaresToBorder[1] = Math.min(numberOfSquaresToBorder[0], numberOfSquaresToBorder[2]);
-        numberOfSquaresToBorder[3] = Math.min(numberOfSquaresToBorder[2], numberOfSquaresToBorder[4]);
-        numberOfSquaresToBorder[5] = Math.min(numberOfSquaresToBorder[4], numberOfSquaresToBorder[6]);
-        numberOfSquaresToBorder[7] = Math.min(numberOfSquaresToBorder[6], numberOfSquaresToBorder[0]);
     }
 
     public void setTargetSquare() {
@@ -71,10 +56,6 @@ public class Square extends JPanel {
         return rank;
     }
 
-    public int[] getNumberOfSquaresToBorder() {
-        return numberOfSquaresToBorder;
-    }
-
     public Piece getPiece() {
         return piece;
     }
@@ -0,0 +1,88 @@
+package com.juliuswendland.chessai;
+
+// Static exchange evaluation: the material a move wins or loses if both colors keep capturing
+// on its target square with their least valuable piece, each stopping as soon as that is better for them
+// Pins and checks are ignored, pieces behind sliders join in once the slider in front has captured
+// Not thread safe, every move picker owns its own instance
+public class StaticExchange {
+    // The king is worth more than everything else, so capturing with it into an attacked square always loses
+    private static final int[] VALUES = {20000, 900, 330, 320, 500, 100};
+    private static final int[] TYPES_BY_VALUE = {Piece.PAWN, Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN, Piece.KING};
+
+    // Gains of every capture in the sequence, one exchange can never take more than 32 captures
+    // plus the one that is not made anymore
+    private final int[] gains = new int[34];
+
+    public int evaluate(Position position, int move) {
+        int startSquare = Move.startSquareOf(move);
+        int targetSquare = Move.targetSquareOf(move);
+        int moveFlag = Move.moveFlagOf(move);
+
+        int movingType = Position.typeOf(position.squares[startSquare]);
+        long occupancy = position.occupiedSquares() ^ Bitboards.squareBit(startSquare);
+
+        if(moveFlag == MoveFlags.EN_PASSANT) {
+            gains[0] = VALUES[Piece.PAWN];
+            // The captured pawn is not on the target square
+            int capturedSquare = targetSquare + (position.colorAtMove == Piece.WHITE ? 8 : -8);
+            occupancy ^= Bitboards.squareBit(capturedSquare);
+        } else {
+            int captured = position.squares[targetSquare];
+            gains[0] = captured == Position.EMPTY ? 0 : VALUES[Position.typeOf(captured)];
+        }
+        if(MoveFlags.isPromotion(moveFlag)) {
+            movingType = MoveFlags.promotionType(moveFlag);
+            gains[0] += VALUES[movingType] - VALUES[Piece.PAWN];
+        }
+
+        long attackers = position.attackersTo(targetSquare, occupancy) & occupancy;
+        long diagonalSliders = position.pieceBitboards[Piece.WHITE][Piece.BISHOP] | position.pieceBitboards[Piece.DARK][Piece.BISHOP]
+                | position.pieceBitboards[Piece.WHITE][Piece.QUEEN] | position.pieceBitboards[Piece.DARK][Piece.QUEEN];
+        long straightSliders = position.pieceBitboards[Piece.WHITE][Piece.ROOK] | position.pieceBitboards[Piece.DARK][Piece.ROOK]
+                | position.pieceBitboards[Piece.WHITE][Piece.QUEEN] | position.pieceBitboards[Piece.DARK][Piece.QUEEN];
+        int color = position.colorAtMove == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        // Value of the piece standing on the target square, which is captured next
+        int pieceOnSquare = VALUES[movingType];
+        int depth = 0;
+
+        while(true) {
+            // Gain if the color at move captured the piece on the target square, which it does not have to
+            depth++;
+            gains[depth] = pieceOnSquare - gains[depth - 1];
+            // Neither color can profit from continuing anymore
+            if(Math.max(-gains[depth - 1], gains[depth]) < 0) break;
+
+            long ownAttackers = attackers & position.colorBitboards[color];
+            if(ownAttackers == 0) break;
+
+            int attackerType = cheapestAttacker(position, ownAttackers, color);
+            long piecesOfType = ownAttackers & position.pieceBitboards[color][attackerType];
+            pieceOnSquare = VALUES[attackerType];
+            occupancy ^= piecesOfType & -piecesOfType;
+            // Sliders behind the piece that just captured can join in now, only the matching rays can open up
+            if(attackerType == Piece.PAWN || attackerType == Piece.BISHOP || attackerType == Piece.QUEEN) {
+                attackers |= Bitboards.bishopAttacks(targetSquare, occupancy) & diagonalSliders;
+            }
+            if(attackerType == Piece.ROOK || attackerType == Piece.QUEEN) {
+                attackers |= Bitboards.rookAttacks(targetSquare, occupancy) & straightSliders;
+            }
+            attackers &= occupancy;
+            color = color == Piece.WHITE ? Piece.DARK : Piece.WHITE;
+        }
+
+        // Every color chooses between stopping and continuing the exchange, starting from the end,
+        // the last gain belongs to a capture that could not or would not be made
+        while(--depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    // Types are numbered king, queen, bishop, knight, rook, pawn, which is not the order of their values
+    private static int cheapestAttacker(Position position, long attackers, int color) {
+        for(int type : TYPES_BY_VALUE) {
+            if((attackers & position.pieceBitboards[color][type]) != 0) return type;
+        }
+        return Piece.KING;
+    }
+}
@@ -0,0 +1,144 @@
+package com.juliuswendland.chessai;
+
+import java.util.Arrays;
+
+// Hash table storing search results by Zobrist key, shared by all search threads without locking
+//
+// Every entry takes two longs: the data and the key XOR the data. A torn entry written by two threads
+// at once no longer matches its key, so it is treated as a miss instead of returning wrong data.
+// Entries are grouped into buckets of two: the first one is only replaced by deeper or newer searches,
+// the second one is always replaced.
+public class TranspositionTable {
+    public static final int DEFAULT_SIZE_MB = 16;
+    public static final int MIN_SIZE_MB = 1;
+    // Largest size whose entries still fit into a single long array
+    public static final int MAX_SIZE_MB = 8192;
+
+    // Bounds of a stored score, an empty entry has none
+    public static final int UPPER_BOUND = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int EXACT = UPPER_BOUND | LOWER_BOUND;
+
+    private static final int LONGS_PER_ENTRY = 2;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int LONGS_PER_BUCKET = LONGS_PER_ENTRY * ENTRIES_PER_BUCKET;
+
+    private long[] table;
+    private long numberOfBuckets;
+    // Incremented for every new search, so entries of old searches get replaced first
+    private int generation;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    public void resize(int megabytes) {
+        megabytes = Math.max(MIN_SIZE_MB, Math.min(MAX_SIZE_MB, megabytes));
+        long numberOfLongs = (long) megabytes * 1024 * 1024 / Long.BYTES;
+        numberOfBuckets = numberOfLongs / LONGS_PER_BUCKET;
+        table = new long[(int) (numberOfBuckets * LONGS_PER_BUCKET)];
+        generation = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    // Returns the data stored for the key or 0 if there is none, use the static methods below to read it
+    public long probe(long key) {
+        int bucket = bucketIndex(key);
+        for(int i = bucket; i < bucket + LONGS_PER_BUCKET; i += LONGS_PER_ENTRY) {
+            long data = table[i + 1];
+            if((table[i] ^ data) == key && data != 0) return data;
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound, int ply) {
+        int bucket = bucketIndex(key);
+        int depthPreferred = bucket;
+        int alwaysReplace = bucket + LONGS_PER_ENTRY;
+
+        long storedData = table[depthPreferred + 1];
+        boolean sameKey = (table[depthPreferred] ^ storedData) == key;
+        int index = alwaysReplace;
+        if(sameKey || storedData == 0 || generationOf(storedData) != generation || depth >= depthOf(storedData)) {
+            index = depthPreferred;
+        }
+
+        // Keep the move of an earlier search of this position if this one did not find any
+        if(move == Move.NONE && (table[index] ^ table[index + 1]) == key) {
+            move = moveOf(table[index + 1]);
+        }
+
+        long data = pack(move, scoreToTable(score, ply), depth, bound, generation);
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    // Permille of the depth preferred entries used by the current search
+    public int hashfull() {
+        int used = 0;
+        int sampledBuckets = (int) Math.min(1000, numberOfBuckets);
+        for(int i = 0; i < sampledBuckets; i++) {
+            long data = table[(i * LONGS_PER_BUCKET) + 1];
+            if(data != 0 && generationOf(data) == generation) used++;
+        }
+        return used * 1000 / sampledBuckets;
+    }
+
+    private int bucketIndex(long key) {
+        // Maps the upper key bits onto the number of buckets, which does not need to be a power of two
+        long bucket = ((key >>> 32) * numberOfBuckets) >>> 32;
+        return (int) (bucket * LONGS_PER_BUCKET);
+    }
+
+    // Data layout: bits 0-15 move, 16-31 score, 32-39 depth, 40-41 bound, 42-49 generation
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        return (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((depth & 0xFFL) << 32)
+                | ((long) bound << 40)
+                | ((long) generation << 42);
+    }
+
+    public static int moveOf(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    // Score relative to the node at the given ply
+    public static int scoreOf(long data, int ply) {
+        return scoreFromTable((short) (data >>> 16), ply);
+    }
+
+    public static int depthOf(long data) {
+        return (byte) (data >>> 32);
+    }
+
+    public static int boundOf(long data) {
+        return (int) ((data >>> 40) & 0x3);
+    }
+
+    private static int generationOf(long data) {
+        return (int) ((data >>> 42) & 0xFF);
+    }
+
+    // Mate scores are stored as distance from the stored position instead of distance from the root,
+    // so they stay correct when the position is reached on another ply
+    private static int scoreToTable(int score, int ply) {
+        if(score >= Search.MATE_BOUND) return score + ply;
+        if(score <= -Search.MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if(score >= Search.MATE_BOUND) return score - ply;
+        if(score <= -Search.MATE_BOUND) return score + ply;
+        return score;
+    }
+}
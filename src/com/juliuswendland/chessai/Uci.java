@@ -0,0 +1,353 @@
+package com.juliuswendland.chessai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Universal Chess Interface front-end, so the engine can be run by chess GUIs and tournament managers
+// Commands are read on the calling thread while the search runs on a worker thread,
+// so stop, isready and quit are answered during a search
+public class Uci {
+    private static final String NAME = "Java Chess AI";
+    private static final String AUTHOR = "Julius Wendland";
+    private static final int MAX_THREADS = 256;
+
+    private final Position position = new Position(Main.START_POSITION);
+    // A position command is read into this one first, so an invalid one leaves the last position as it was
+    private final Position nextPosition = new Position(Main.START_POSITION);
+    private final TranspositionTable transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB);
+    private final ParallelSearch search = new ParallelSearch(1, transpositionTable);
+    private final ExecutorService searchThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "UCI search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> runningSearch;
+    // Only used if OwnBook is on
+    private PolyglotBook book;
+    private boolean ownBook;
+
+    // An infinite search must not report its best move before it was told to stop,
+    // a ponder search not before it was told to stop or that the expected move was played
+    private final Object stopSignal = new Object();
+    private boolean waitingForStop;
+    // Limits the running ponder search was started with and the time limits that apply once ponderhit arrives
+    private SearchLimits ponderSearchLimits;
+    private SearchLimits ponderLimits;
+
+    public static void main(String[] args) throws IOException {
+        new Uci().run();
+    }
+
+    public void run() throws IOException {
+        search.setIterationListener(this::sendInfo);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while((line = reader.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            switch(tokens[0]) {
+                case "uci" -> {
+                    send("id name " + NAME);
+                    send("id author " + AUTHOR);
+                    send("option name Hash type spin default " + TranspositionTable.DEFAULT_SIZE_MB
+                            + " min " + TranspositionTable.MIN_SIZE_MB + " max " + TranspositionTable.MAX_SIZE_MB);
+                    send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                    // Tells the GUI that the engine can search while the opponent thinks
+                    send("option name Ponder type check default false");
+                    send("option name OwnBook type check default false");
+                    send("option name BookFile type string default <empty>");
+                    SearchOptions options = search.getOptions();
+                    send("option name NullMovePruning type check default " + options.nullMovePruning);
+                    send("option name LateMoveReductions type check default " + options.lateMoveReductions);
+                    send("option name ReverseFutilityPruning type check default " + options.reverseFutilityPruning);
+                    send("option name FutilityPruning type check default " + options.futilityPruning);
+                    send("option name CheckExtensions type check default " + options.checkExtensions);
+                    send("option name PseudoLegalGeneration type check default " + options.pseudoLegalGeneration);
+                    send("uciok");
+                }
+                case "isready" -> send("readyok");
+                case "ucinewgame" -> {
+                    waitForSearch();
+                    transpositionTable.clear();
+                }
+                case "setoption" -> {
+                    waitForSearch();
+                    setOption(tokens);
+                }
+                case "position" -> {
+                    waitForSearch();
+                    setPosition(tokens);
+                }
+                case "go" -> {
+                    waitForSearch();
+                    go(tokens);
+                }
+                case "ponderhit" -> ponderHit();
+                case "stop" -> stop();
+                case "d" -> send(Fen.write(position));
+                case "quit" -> {
+                    stop();
+                    return;
+                }
+                // Unknown commands are ignored as the protocol demands
+                default -> {}
+            }
+        }
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <name> value <value>
+        String name = valueAfter(tokens, "name");
+        String value = valueAfter(tokens, "value");
+        if(name == null || value == null) return;
+
+        try {
+            switch(name.toLowerCase()) {
+                case "hash" -> transpositionTable.resize(Integer.parseInt(value));
+                case "threads" -> search.setThreads(Math.min(MAX_THREADS, Integer.parseInt(value)));
+                case "nullmovepruning" -> search.getOptions().nullMovePruning = Boolean.parseBoolean(value);
+                case "latemovereductions" -> search.getOptions().lateMoveReductions = Boolean.parseBoolean(value);
+                case "reversefutilitypruning" -> search.getOptions().reverseFutilityPruning = Boolean.parseBoolean(value);
+                case "futilitypruning" -> search.getOptions().futilityPruning = Boolean.parseBoolean(value);
+                case "checkextensions" -> search.getOptions().checkExtensions = Boolean.parseBoolean(value);
+                case "pseudolegalgeneration" -> search.getOptions().pseudoLegalGeneration = Boolean.parseBoolean(value);
+                case "ownbook" -> ownBook = Boolean.parseBoolean(value);
+                case "bookfile" -> openBook(value);
+                default -> {}
+            }
+        } catch (NumberFormatException e) {
+            send("info string invalid value " + value + " for option " + name);
+        }
+    }
+
+    private void openBook(String file) {
+        book = null;
+        if(file.isEmpty() || file.equals("<empty>")) return;
+
+        try {
+            book = PolyglotBook.open(Path.of(file));
+            send("info string opened book with " + book.size() + " entries");
+        } catch (IOException | IllegalArgumentException e) {
+            send("info string could not open book: " + e.getMessage());
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        // position startpos|fen <fen> [moves <move> ...]
+        int movesIndex = indexOf(tokens, "moves");
+        int endOfPosition = movesIndex == -1 ? tokens.length : movesIndex;
+
+        try {
+            if(tokens.length > 1 && tokens[1].equals("fen")) {
+                Fen.read(nextPosition, String.join(" ", Arrays.copyOfRange(tokens, 2, endOfPosition)));
+            } else {
+                Fen.read(nextPosition, Main.START_POSITION);
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage() + ", keeping the last position");
+            return;
+        }
+
+        if(movesIndex != -1) {
+            MoveGenerator moveGenerator = new MoveGenerator(nextPosition);
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            for(int i = movesIndex + 1; i < tokens.length; i++) {
+                int move = findMove(moveGenerator, moves, tokens[i]);
+                if(move == Move.NONE) {
+                    send("info string illegal move " + tokens[i] + ", keeping the last position");
+                    return;
+                }
+                nextPosition.makeMove(move);
+            }
+        }
+        position.copyFrom(nextPosition);
+    }
+
+    private static int findMove(MoveGenerator moveGenerator, int[] moves, String notation) {
+        int numberOfMoves = moveGenerator.generateLegalMoves(moves);
+        for(int i = 0; i < numberOfMoves; i++) {
+            if(Move.toUci(moves[i]).equals(notation)) return moves[i];
+        }
+        return Move.NONE;
+    }
+
+    private void go(String[] tokens) {
+        long remainingTime = -1;
+        long increment = 0;
+        int movesToGo = 0;
+        long moveTime = -1;
+        int depth = -1;
+        long nodes = -1;
+        boolean infinite = false;
+        boolean ponder = false;
+        boolean whiteAtMove = position.colorAtMove == Piece.WHITE;
+
+        for(int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+            try {
+                switch(tokens[i]) {
+                    case "wtime" -> { if(whiteAtMove) remainingTime = Long.parseLong(value); }
+                    case "btime" -> { if(!whiteAtMove) remainingTime = Long.parseLong(value); }
+                    case "winc" -> { if(whiteAtMove) increment = Long.parseLong(value); }
+                    case "binc" -> { if(!whiteAtMove) increment = Long.parseLong(value); }
+                    case "movestogo" -> movesToGo = Integer.parseInt(value);
+                    case "movetime" -> moveTime = Long.parseLong(value);
+                    case "depth" -> depth = Integer.parseInt(value);
+                    case "nodes" -> nodes = Long.parseLong(value);
+                    case "infinite" -> infinite = true;
+                    case "ponder" -> ponder = true;
+                    default -> {}
+                }
+            } catch (NumberFormatException e) {
+                send("info string invalid value " + value + " for " + tokens[i]);
+            }
+        }
+
+        // Book moves are answered right away, but not while analysing or pondering
+        if(ownBook && book != null && !infinite && !ponder) {
+            int bookMove = book.probe(position);
+            if(bookMove != Move.NONE) {
+                send("bestmove " + Move.toUci(bookMove));
+                return;
+            }
+        }
+
+        SearchLimits limits = new SearchLimits();
+        if(!infinite) {
+            if(moveTime >= 0) {
+                limits = SearchLimits.moveTime(moveTime);
+            } else if(remainingTime >= 0) {
+                limits = SearchLimits.clock(remainingTime, increment, movesToGo);
+            }
+            if(depth > 0) limits.depth = Math.min(depth, Search.MAX_DEPTH);
+            if(nodes > 0) limits.nodes = nodes;
+        }
+
+        // The position is the one after the expected move, the clock only starts running with ponderhit
+        ponderLimits = null;
+        if(ponder && !infinite) {
+            ponderLimits = limits;
+            limits = new SearchLimits();
+            limits.depth = ponderLimits.depth;
+            limits.nodes = ponderLimits.nodes;
+        }
+
+        SearchLimits searchLimits = limits;
+        ponderSearchLimits = searchLimits;
+        synchronized(stopSignal) {
+            waitingForStop = infinite || ponder;
+        }
+        // A stop arriving before the search thread started searching must still end it
+        search.prepare();
+        runningSearch = searchThread.submit(() -> {
+            SearchResult result = search.search(position, searchLimits);
+            synchronized(stopSignal) {
+                while(waitingForStop) {
+                    try {
+                        stopSignal.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            send("info string pawn hash hit rate " + (search.pawnHashHitRate() / 10.0) + "%");
+            sendBestMove(result);
+        });
+    }
+
+    // The opponent played the expected move, the ponder search goes on as a normal search
+    private void ponderHit() {
+        if(ponderLimits != null) {
+            search.ponderHit(ponderSearchLimits, ponderLimits);
+            ponderLimits = null;
+        }
+        synchronized(stopSignal) {
+            waitingForStop = false;
+            stopSignal.notifyAll();
+        }
+    }
+
+    private void stop() {
+        synchronized(stopSignal) {
+            waitingForStop = false;
+            stopSignal.notifyAll();
+        }
+        search.stop();
+        waitForSearch();
+    }
+
+    private void waitForSearch() {
+        if(runningSearch == null) return;
+        try {
+            runningSearch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            send("info string search failed: " + e.getCause());
+        }
+        runningSearch = null;
+    }
+
+    private void sendInfo(SearchResult result) {
+        StringBuilder info = new StringBuilder("info depth ").append(result.depth());
+        int score = result.score();
+        if(Math.abs(score) >= Search.MATE_BOUND) {
+            // Mate scores count plies, UCI counts moves
+            int movesToMate = score > 0 ? (Search.MATE_SCORE - score + 1) / 2 : -(Search.MATE_SCORE + score) / 2;
+            info.append(" score mate ").append(movesToMate);
+        } else {
+            info.append(" score cp ").append(score);
+        }
+        info.append(" nodes ").append(result.nodes())
+                .append(" nps ").append(result.nodesPerSecond())
+                .append(" time ").append(result.timeMillis())
+                .append(" hashfull ").append(transpositionTable.hashfull())
+                .append(" pv");
+        for(int move : result.principalVariation()) {
+            info.append(' ').append(Move.toUci(move));
+        }
+        send(info.toString());
+    }
+
+    private void sendBestMove(SearchResult result) {
+        // A best move has to be sent even if there is no legal move
+        String bestMove = result.bestMove() == Move.NONE ? "0000" : Move.toUci(result.bestMove());
+        int[] principalVariation = result.principalVariation();
+        if(principalVariation.length > 1) {
+            send("bestmove " + bestMove + " ponder " + Move.toUci(principalVariation[1]));
+        } else {
+            send("bestmove " + bestMove);
+        }
+    }
+
+    private static synchronized void send(String message) {
+        System.out.println(message);
+        System.out.flush();
+    }
+
+    // Joins all tokens after the keyword up to the next keyword of setoption
+    private static String valueAfter(String[] tokens, String keyword) {
+        int index = indexOf(tokens, keyword);
+        if(index == -1 || index + 1 >= tokens.length) return null;
+
+        StringBuilder value = new StringBuilder();
+        for(int i = index + 1; i < tokens.length && !tokens[i].equals("name") && !tokens[i].equals("value"); i++) {
+            if(!value.isEmpty()) value.append(' ');
+            value.append(tokens[i]);
+        }
+        return value.toString();
+    }
+
+    private static int indexOf(String[] tokens, String token) {
+        for(int i = 0; i < tokens.length; i++) {
+            if(tokens[i].equals(token)) return i;
+        }
+        return -1;
+    }
+}
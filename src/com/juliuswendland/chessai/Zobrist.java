@@ -0,0 +1,38 @@
+package com.juliuswendland.chessai;
+
+import java.util.SplittableRandom;
+
+// Random keys that are combined with XOR into a 64 bit hash of a position
+public class Zobrist {
+    // Indexed by piece (see Position.makePiece) and square
+    public static final long[][] PIECES = new long[16][64];
+    public static final long COLOR_AT_MOVE;
+    // Indexed by the whole castling rights bitmask
+    public static final long[] CASTLING_RIGHTS = new long[16];
+    public static final long[] EN_PASSANT_FILES = new long[8];
+
+    static {
+        // Fixed seed, so keys stay the same between runs
+        SplittableRandom random = new SplittableRandom(0x4A756C697573L);
+
+        for(int color = Piece.DARK; color <= Piece.WHITE; color++) {
+            for(int type = Piece.KING; type <= Piece.PAWN; type++) {
+                for(int square = 0; square < 64; square++) {
+                    PIECES[Position.makePiece(type, color)][square] = random.nextLong();
+                }
+            }
+        }
+        COLOR_AT_MOVE = random.nextLong();
+        for(int i = 0; i < CASTLING_RIGHTS.length; i++) {
+            CASTLING_RIGHTS[i] = random.nextLong();
+        }
+        for(int i = 0; i < EN_PASSANT_FILES.length; i++) {
+            EN_PASSANT_FILES[i] = random.nextLong();
+        }
+    }
+
+    public static long enPassantKey(int enPassantSquare) {
+        if(enPassantSquare == -1) return 0L;
+        return EN_PASSANT_FILES[enPassantSquare % 8];
+    }
+}